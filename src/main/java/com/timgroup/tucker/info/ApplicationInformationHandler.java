@@ -1,27 +1,54 @@
 package com.timgroup.tucker.info;
 
+import com.timgroup.tucker.info.async.AsyncComponent;
+import com.timgroup.tucker.info.status.ComponentHistory;
+import com.timgroup.tucker.info.status.MetricsTextWriter;
+import com.timgroup.tucker.info.status.StatusChangeEvent;
+import com.timgroup.tucker.info.status.StatusChangeSubscription;
 import com.timgroup.tucker.info.status.StatusPage;
 import com.timgroup.tucker.info.status.StatusPageGenerator;
+import com.timgroup.tucker.info.status.UptimeReport;
 
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
-
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Stream;
+
+import static java.net.HttpURLConnection.HTTP_ACCEPTED;
+import static java.net.HttpURLConnection.HTTP_BAD_METHOD;
+import static java.net.HttpURLConnection.HTTP_BAD_REQUEST;
 import static java.net.HttpURLConnection.HTTP_NOT_FOUND;
+import static java.net.HttpURLConnection.HTTP_NOT_MODIFIED;
 import static java.net.HttpURLConnection.HTTP_NO_CONTENT;
 import static java.net.HttpURLConnection.HTTP_UNAVAILABLE;
+import static java.util.stream.Collectors.toList;
 
 public class ApplicationInformationHandler {
 
     private static final String UTF_8 = "UTF-8";
+    private static final String CONTENT_LENGTH = "Content-Length";
+    private static final String ACCEPT_ENCODING = "Accept-Encoding";
+    private static final String POST = "POST";
 
     private final Map<String, Handler> dispatch = new HashMap<>();
+    private final Map<String, Handler> postDispatch = new HashMap<>();
     private final Map<String, Handler> jsonpDispatch = new HashMap<>();
+    private final HandlerStatistics statistics;
 
     public ApplicationInformationHandler(StatusPageGenerator statusPage, Stoppable stoppable, Health health) {
         dispatch.put(null, new RedirectTo("/status"));
@@ -32,55 +59,234 @@ public class ApplicationInformationHandler {
         dispatch.put("/version", new ComponentHandler(statusPage.getVersionComponent()));
         dispatch.put("/status", new StatusPageHandler(statusPage, health));
         dispatch.put("/status.json", new StatusPageJsonHandler(statusPage, health));
+        dispatch.put("/status/stream", new StatusStreamHandler(statusPage));
+        dispatch.put("/status/history", new StatusHistoryHandler(statusPage));
+        dispatch.put("/status/uptime", new UptimeHandler(statusPage));
+        dispatch.put("/metrics", new MetricsHandler(statusPage, health, this));
+        dispatch.put("/self", new SelfHandler(this));
         dispatch.put("/status-page.dtd", new ResourceHandler(StatusPageGenerator.DTD_FILENAME, "application/xml-dtd"));
         dispatch.put("/status-page.css", new ResourceHandler(StatusPageGenerator.CSS_FILENAME, "text/css"));
+        postDispatch.put("/status/refresh", new RefreshHandler(statusPage));
         jsonpDispatch.put("/status", new StatusPageJsonHandler(statusPage, health));
         jsonpDispatch.put("/status.json", new StatusPageJsonHandler(statusPage, health));
+        statistics = new HandlerStatistics(Stream.concat(dispatch.keySet().stream(), postDispatch.keySet().stream())
+                .map(ApplicationInformationHandler::routeName).collect(toList()));
     }
 
     public void handle(String path, WebResponse response) throws IOException {
-        if (dispatch.containsKey(path)) {
-            dispatch.get(path).handle(response);
+        if (postDispatch.containsKey(path)) {
+            if (POST.equals(response.getRequestMethod())) {
+                handleInstrumented(path, postDispatch.get(path), response, null);
+            } else {
+                response.setHeader("Allow", POST);
+                response.reject(HTTP_BAD_METHOD, "method not allowed");
+            }
+        } else if (dispatch.containsKey(path)) {
+            handleInstrumented(path, dispatch.get(path), response, null);
         } else {
+            statistics.recordNotFound();
             response.reject(HTTP_NOT_FOUND, "try asking for .../status");
         }
     }
 
     public void handleJSONP(String path, String callback, WebResponse response) throws IOException {
         if (jsonpDispatch.containsKey(path)) {
-            jsonpDispatch.get(path).handle(new JSONPResponse(callback, response));
+            handleInstrumented(path, jsonpDispatch.get(path), response, callback);
         } else {
             handle(path, response);
         }
     }
 
+    /**
+     * Statistics on the requests this handler has served, which may also be registered with a Dropwizard registry.
+     */
+    public HandlerStatistics getStatistics() {
+        return statistics;
+    }
+
+    private void handleInstrumented(String path, Handler handler, WebResponse response, String callback) throws IOException {
+        InstrumentedResponse instrumented = new InstrumentedResponse(response);
+        long started = System.nanoTime();
+        try {
+            handler.handle(callback == null ? instrumented : new JSONPResponse(callback, instrumented));
+        } finally {
+            statistics.route(routeName(path)).record(System.nanoTime() - started, instrumented.bytesWritten, instrumented.rejected);
+        }
+    }
+
+    private static String routeName(String path) {
+        return path == null ? "" : path;
+    }
+
     private interface Handler {
         void handle(WebResponse response) throws IOException;
     }
 
+    /**
+     * Sets validation and caching headers for a status page, and answers with 304 if the client already has an
+     * equivalent representation. The tag is weak because the rendered page includes its timestamp, which the
+     * validator deliberately ignores.
+     */
+    private static boolean notModified(WebResponse response, StatusPageGenerator generator, StatusPage report, String format, Health.State health, ContentEncoding encoding) throws IOException {
+        String codingSuffix = encoding == ContentEncoding.identity ? "" : "-" + encoding;
+        String entityTag = "W/\"" + report.getContentHash() + "-" + format + "-" + health + codingSuffix + "\"";
+        response.setHeader("ETag", entityTag);
+        response.setHeader("Cache-Control", "max-age=" + generator.getRemainingFreshness(report).getSeconds());
+        if (matchesEntityTag(response.getRequestHeader("If-None-Match"), entityTag)) {
+            response.respond(HTTP_NOT_MODIFIED);
+            return true;
+        }
+        return false;
+    }
+
+    private static boolean matchesEntityTag(String ifNoneMatch, String entityTag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        String opaqueTag = entityTag.substring(2);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || tag.equals(entityTag) || tag.equals(opaqueTag) || tag.equals("W/" + opaqueTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static ContentEncoding negotiateEncoding(WebResponse response) throws IOException {
+        response.setHeader("Vary", ACCEPT_ENCODING);
+        return ContentEncoding.negotiate(response.getRequestHeader(ACCEPT_ENCODING));
+    }
+
+    private static void respondWithBytes(WebResponse response, String contentType, ContentEncoding encoding, byte[] body) throws IOException {
+        if (encoding != ContentEncoding.identity) {
+            response.setHeader("Content-Encoding", encoding.name());
+        }
+        response.setHeader(CONTENT_LENGTH, Integer.toString(body.length));
+        try (OutputStream out = response.respond(contentType, UTF_8)) {
+            out.write(body);
+        }
+    }
+
+    private static final class InstrumentedResponse implements WebResponse {
+        private final WebResponse underlying;
+        private long bytesWritten;
+        private boolean rejected;
+
+        public InstrumentedResponse(WebResponse underlying) {
+            this.underlying = underlying;
+        }
+
+        @Override
+        public String getRequestMethod() {
+            return underlying.getRequestMethod();
+        }
+
+        @Override
+        public String getRequestHeader(String name) {
+            return underlying.getRequestHeader(name);
+        }
+
+        @Override
+        public String getRequestParameter(String name) {
+            return underlying.getRequestParameter(name);
+        }
+
+        @Override
+        public void setHeader(String name, String value) throws IOException {
+            underlying.setHeader(name, value);
+        }
+
+        @Override
+        public OutputStream respond(String contentType, String characterEncoding) throws IOException {
+            OutputStream understream = underlying.respond(contentType, characterEncoding);
+            return new FilterOutputStream(understream) {
+                @Override
+                public void write(int b) throws IOException {
+                    understream.write(b);
+                    bytesWritten++;
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    understream.write(b, off, len);
+                    bytesWritten += len;
+                }
+            };
+        }
+
+        @Override
+        public void respond(int statusCode) throws IOException {
+            rejected = statusCode >= HTTP_BAD_REQUEST;
+            underlying.respond(statusCode);
+        }
+
+        @Override
+        public void reject(int status, String message) throws IOException {
+            rejected = true;
+            underlying.reject(status, message);
+        }
+
+        @Override
+        public void redirect(String relativePath) throws IOException {
+            underlying.redirect(relativePath);
+        }
+    }
+
     private static final class JSONPResponse implements WebResponse {
         private final String callback;
         private final WebResponse underlying;
+        private String contentLength;
 
         public JSONPResponse(String callback, WebResponse underlying) {
             this.callback = callback;
             this.underlying = underlying;
         }
 
+        @Override
+        public String getRequestMethod() {
+            return underlying.getRequestMethod();
+        }
+
+        @Override
+        public String getRequestHeader(String name) {
+            if (name.equalsIgnoreCase(ACCEPT_ENCODING)) {
+                return null; // the callback is wrapped around the body as it is written, so it cannot be compressed
+            }
+            return underlying.getRequestHeader(name);
+        }
+
+        @Override
+        public String getRequestParameter(String name) {
+            return underlying.getRequestParameter(name);
+        }
+
         @Override
         public void setHeader(String name, String value) throws IOException {
+            if (name.equalsIgnoreCase(CONTENT_LENGTH)) {
+                contentLength = value;
+                return;
+            }
             underlying.setHeader(name, value);
         }
 
         @Override
         public OutputStream respond(String contentType, String characterEncoding) throws IOException {
             if (!contentType.equalsIgnoreCase("application/json")) {
+                if (contentLength != null) {
+                    underlying.setHeader(CONTENT_LENGTH, contentLength);
+                }
                 return underlying.respond(contentType, characterEncoding);
             }
 
+            byte[] callbackBytes = callback.getBytes(characterEncoding);
+            if (contentLength != null) {
+                underlying.setHeader(CONTENT_LENGTH, Long.toString(Long.parseLong(contentLength) + callbackBytes.length + 2));
+            }
+
             final OutputStream understream = underlying.respond("application/javascript", characterEncoding);
 
-            understream.write(callback.getBytes(characterEncoding));
+            understream.write(callbackBytes);
             understream.write('(');
 
             return new OutputStream() {
@@ -145,10 +351,13 @@ public class ApplicationInformationHandler {
         }
 
         @Override public void handle(WebResponse response) throws IOException {
-            try (OutputStreamWriter writer = new OutputStreamWriter(response.respond("text/xml", UTF_8), UTF_8)) {
-                StatusPage report = statusPageGenerator.getApplicationReport();
-                report.render(writer, health);
+            StatusPage report = statusPageGenerator.getApplicationReport();
+            Health.State healthState = health.get();
+            ContentEncoding encoding = negotiateEncoding(response);
+            if (notModified(response, statusPageGenerator, report, "xml", healthState, encoding)) {
+                return;
             }
+            respondWithBytes(response, "text/xml", encoding, report.renderBytes(healthState, encoding));
         }
     }
 
@@ -162,9 +371,246 @@ public class ApplicationInformationHandler {
         }
 
         @Override public void handle(WebResponse response) throws IOException {
-            try (OutputStreamWriter writer = new OutputStreamWriter(response.respond("application/json", UTF_8), UTF_8)) {
-                StatusPage report = statusPageGenerator.getApplicationReport();
-                report.renderJson(writer, health.get());
+            StatusPage report = statusPageGenerator.getApplicationReport();
+            Health.State healthState = health.get();
+            ContentEncoding encoding = negotiateEncoding(response);
+            String since = response.getRequestParameter("since");
+            if (since != null) {
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                try (Writer writer = new OutputStreamWriter(buffer, StandardCharsets.UTF_8)) {
+                    report.renderJsonDelta(writer, healthState, since);
+                } catch (IllegalArgumentException e) {
+                    response.reject(HTTP_BAD_REQUEST, "since must be a change token");
+                    return;
+                }
+                respondWithBytes(response, "application/json", encoding, encoding.encode(buffer.toByteArray()));
+                return;
+            }
+            if (notModified(response, statusPageGenerator, report, "json", healthState, encoding)) {
+                return;
+            }
+            respondWithBytes(response, "application/json", encoding, report.renderJsonBytes(healthState, encoding));
+        }
+    }
+
+    private static final class StatusStreamHandler implements Handler {
+        private static final long HEARTBEAT_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(15);
+        private static final long MAXIMUM_STREAM_MILLIS = TimeUnit.MINUTES.toMillis(10);
+        private static final long RECONNECT_MILLIS = TimeUnit.SECONDS.toMillis(5);
+
+        private final StatusPageGenerator statusPageGenerator;
+
+        public StatusStreamHandler(StatusPageGenerator statusPage) {
+            this.statusPageGenerator = statusPage;
+        }
+
+        @Override public void handle(WebResponse response) throws IOException {
+            StatusChangeSubscription opened;
+            try {
+                opened = statusPageGenerator.subscribeToChanges(response.getRequestHeader("Last-Event-ID"));
+            } catch (IllegalArgumentException e) {
+                response.reject(HTTP_BAD_REQUEST, "Last-Event-ID must be a change token");
+                return;
+            }
+
+            try (StatusChangeSubscription subscription = opened) {
+                if (subscription == null) {
+                    response.reject(HTTP_UNAVAILABLE, "too many status stream subscribers");
+                    return;
+                }
+                response.setHeader("Cache-Control", "no-cache");
+                try (OutputStream out = response.respond("text/event-stream", UTF_8)) {
+                    streamChanges(subscription, out);
+                }
+            }
+        }
+
+        private void streamChanges(StatusChangeSubscription subscription, OutputStream out) throws IOException {
+            out.write(("retry: " + RECONNECT_MILLIS + "\n\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            long endOfStream = System.currentTimeMillis() + MAXIMUM_STREAM_MILLIS;
+            while (subscription.isOpen() && System.currentTimeMillis() < endOfStream) {
+                StatusChangeEvent event;
+                try {
+                    event = subscription.poll(HEARTBEAT_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                if (event != null) {
+                    String message = "id: " + event.getChangeToken() + "\nevent: " + eventName(event) + "\ndata: " + event.getJson() + "\n\n";
+                    out.write(message.getBytes(StandardCharsets.UTF_8));
+                } else if (subscription.isOpen()) {
+                    out.write(": heartbeat\n\n".getBytes(StandardCharsets.UTF_8));
+                }
+                out.flush();
+            }
+        }
+
+        private static String eventName(StatusChangeEvent event) {
+            if (event.isReset()) {
+                return "reset";
+            }
+            return event.isRemoval() ? "removed" : "component";
+        }
+    }
+
+    private static final class StatusHistoryHandler implements Handler {
+        private final StatusPageGenerator statusPageGenerator;
+
+        public StatusHistoryHandler(StatusPageGenerator statusPage) {
+            this.statusPageGenerator = statusPage;
+        }
+
+        @Override public void handle(WebResponse response) throws IOException {
+            String id = response.getRequestParameter("id");
+            if (id == null) {
+                response.reject(HTTP_BAD_REQUEST, "try asking for .../status/history?id=<component id>");
+                return;
+            }
+            Optional<ComponentHistory> history = statusPageGenerator.getHistory(id);
+            if (!history.isPresent()) {
+                response.reject(HTTP_NOT_FOUND, "no component with id " + id);
+                return;
+            }
+            try (Writer writer = new OutputStreamWriter(response.respond("application/json", UTF_8), StandardCharsets.UTF_8)) {
+                history.get().renderJson(writer);
+            }
+        }
+    }
+
+    private static final class RefreshHandler implements Handler {
+        private static final int HTTP_TOO_MANY_REQUESTS = 429;
+        private static final long REFRESH_WAIT_MILLIS = 500L;
+
+        private final StatusPageGenerator statusPageGenerator;
+
+        public RefreshHandler(StatusPageGenerator statusPage) {
+            this.statusPageGenerator = statusPage;
+        }
+
+        /**
+         * Waits briefly for the refreshed report, answering 202 if it is not ready by then so that a slow check does
+         * not hold up a server thread; the refresh carries on in the background.
+         */
+        @Override public void handle(WebResponse response) throws IOException {
+            String id = response.getRequestParameter("id");
+            if (id == null) {
+                response.reject(HTTP_BAD_REQUEST, "try posting to .../status/refresh?id=<component id>");
+                return;
+            }
+            Optional<Component> component = statusPageGenerator.getComponent(id);
+            if (!component.isPresent() || !(component.get() instanceof AsyncComponent)) {
+                response.reject(HTTP_NOT_FOUND, "no asynchronous component with id " + id);
+                return;
+            }
+            AsyncComponent asyncComponent = (AsyncComponent) component.get();
+            Report report;
+            try {
+                report = asyncComponent.refreshNow().get(REFRESH_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RejectedExecutionException) {
+                    long retryAfter = Math.max(1L, (asyncComponent.getRefreshLimit().toMillis() + 999L) / 1000L);
+                    response.setHeader("Retry-After", Long.toString(retryAfter));
+                    response.reject(HTTP_TOO_MANY_REQUESTS, e.getCause().getMessage());
+                    return;
+                }
+                report = new Report(Status.WARNING, e.getCause());
+            } catch (TimeoutException e) {
+                response.respond(HTTP_ACCEPTED);
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                response.respond(HTTP_ACCEPTED);
+                return;
+            }
+            try (Writer writer = new OutputStreamWriter(response.respond("application/json", UTF_8), StandardCharsets.UTF_8)) {
+                StatusPage.renderJsonComponent(writer, asyncComponent, report);
+            }
+        }
+    }
+
+    private static final class UptimeHandler implements Handler {
+        private final StatusPageGenerator statusPageGenerator;
+
+        public UptimeHandler(StatusPageGenerator statusPage) {
+            this.statusPageGenerator = statusPage;
+        }
+
+        @Override public void handle(WebResponse response) throws IOException {
+            Duration window = statusPageGenerator.getUptimeHorizon();
+            String days = response.getRequestParameter("days");
+            if (days != null) {
+                try {
+                    window = Duration.ofDays(Long.parseLong(days));
+                } catch (NumberFormatException | ArithmeticException e) {
+                    response.reject(HTTP_BAD_REQUEST, "days must be a whole number");
+                    return;
+                }
+                if (window.isNegative() || window.isZero() || window.compareTo(statusPageGenerator.getUptimeHorizon()) > 0) {
+                    response.reject(HTTP_BAD_REQUEST, "days must be between 1 and " + statusPageGenerator.getUptimeHorizon().toDays());
+                    return;
+                }
+            }
+            String id = response.getRequestParameter("id");
+            UptimeReport uptime;
+            if (id == null) {
+                uptime = statusPageGenerator.getUptime(window);
+            } else {
+                Optional<UptimeReport> componentUptime = statusPageGenerator.getUptime(id, window);
+                if (!componentUptime.isPresent()) {
+                    response.reject(HTTP_NOT_FOUND, "no component with id " + id);
+                    return;
+                }
+                uptime = componentUptime.get();
+            }
+            try (Writer writer = new OutputStreamWriter(response.respond("application/json", UTF_8), StandardCharsets.UTF_8)) {
+                uptime.renderJson(writer);
+            }
+        }
+    }
+
+    private static final class MetricsHandler implements Handler {
+        private final StatusPageGenerator statusPageGenerator;
+        private final Health health;
+        private final ApplicationInformationHandler owner;
+
+        public MetricsHandler(StatusPageGenerator statusPage, Health health, ApplicationInformationHandler owner) {
+            this.statusPageGenerator = statusPage;
+            this.health = health;
+            this.owner = owner;
+        }
+
+        @Override public void handle(WebResponse response) throws IOException {
+            StatusPage report = statusPageGenerator.getApplicationReport();
+            Health.State healthState = health.get();
+            response.setHeader("Vary", "Accept, " + ACCEPT_ENCODING);
+            ContentEncoding encoding = ContentEncoding.negotiate(response.getRequestHeader(ACCEPT_ENCODING));
+            if (encoding != ContentEncoding.identity) {
+                response.setHeader("Content-Encoding", encoding.name());
+            }
+            String accept = response.getRequestHeader("Accept");
+            boolean openMetrics = accept != null && accept.contains("application/openmetrics-text");
+            String contentType = openMetrics ? StatusPage.OPENMETRICS_CONTENT_TYPE : StatusPage.METRICS_CONTENT_TYPE;
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(encoding.wrap(response.respond(contentType, UTF_8)), StandardCharsets.UTF_8))) {
+                MetricsTextWriter metrics = new MetricsTextWriter(writer, openMetrics);
+                report.renderMetrics(metrics, healthState);
+                owner.statistics.renderMetrics(metrics);
+                metrics.finish();
+            }
+        }
+    }
+
+    private static final class SelfHandler implements Handler {
+        private final ApplicationInformationHandler owner;
+
+        public SelfHandler(ApplicationInformationHandler owner) {
+            this.owner = owner;
+        }
+
+        @Override public void handle(WebResponse response) throws IOException {
+            try (Writer writer = new OutputStreamWriter(response.respond("application/json", UTF_8), StandardCharsets.UTF_8)) {
+                owner.statistics.renderJson(writer);
             }
         }
     }
@@ -0,0 +1,93 @@
+package com.timgroup.tucker.info;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The content codings a response may be sent with, named as they appear in Accept-Encoding and Content-Encoding.
+ */
+public enum ContentEncoding {
+    identity {
+        @Override OutputStream wrap(OutputStream out) {
+            return out;
+        }
+    },
+    gzip {
+        @Override OutputStream wrap(OutputStream out) throws IOException {
+            return new GZIPOutputStream(out);
+        }
+    },
+    deflate {
+        @Override OutputStream wrap(OutputStream out) {
+            return new DeflaterOutputStream(out);
+        }
+    };
+
+    abstract OutputStream wrap(OutputStream out) throws IOException;
+
+    public byte[] encode(byte[] bytes) throws IOException {
+        if (this == identity) {
+            return bytes;
+        }
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(bytes.length / 4 + 64);
+        try (OutputStream out = wrap(buffer)) {
+            out.write(bytes);
+        }
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Picks the coding to answer a request with, preferring gzip over deflate when the client accepts both equally.
+     */
+    public static ContentEncoding negotiate(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return identity;
+        }
+        float gzipQuality = -1;
+        float deflateQuality = -1;
+        float anyQuality = 0;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parameters = coding.split(";");
+            float quality = 1;
+            for (int i = 1; i < parameters.length; i++) {
+                String parameter = parameters[i].trim();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        quality = Float.parseFloat(parameter.substring(2));
+                    } catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+            switch (parameters[0].trim().toLowerCase(Locale.ROOT)) {
+                case "gzip":
+                case "x-gzip":
+                    gzipQuality = quality;
+                    break;
+                case "deflate":
+                    deflateQuality = quality;
+                    break;
+                case "*":
+                    anyQuality = quality;
+                    break;
+            }
+        }
+        if (gzipQuality < 0) {
+            gzipQuality = anyQuality;
+        }
+        if (deflateQuality < 0) {
+            deflateQuality = anyQuality;
+        }
+        if (gzipQuality > 0 && gzipQuality >= deflateQuality) {
+            return gzip;
+        }
+        if (deflateQuality > 0) {
+            return deflate;
+        }
+        return identity;
+    }
+}
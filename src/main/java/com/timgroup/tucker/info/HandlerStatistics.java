@@ -0,0 +1,161 @@
+package com.timgroup.tucker.info;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.MetricSet;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.timgroup.tucker.info.status.MetricsTextWriter;
+
+/**
+ * Counts the requests Tucker itself serves, per route: how many, how long they took, how many bytes were written and
+ * how many were rejected. Also records requests for unknown paths and, when served by
+ * {@link com.timgroup.tucker.info.httpserver.ApplicationInformationServer}, how long requests queued for a thread.
+ */
+public final class HandlerStatistics implements MetricSet {
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final double NANOS_PER_MILLI = 1e6;
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private final Map<String, RouteStatistics> routes;
+    private final LongAdder notFound = new LongAdder();
+    private final Timer queueing = new Timer();
+
+    HandlerStatistics(Collection<String> routes) {
+        Map<String, RouteStatistics> byRoute = new TreeMap<>();
+        for (String route : routes) {
+            byRoute.put(route, new RouteStatistics());
+        }
+        this.routes = Collections.unmodifiableMap(byRoute);
+    }
+
+    RouteStatistics route(String route) {
+        return routes.get(route);
+    }
+
+    void recordNotFound() {
+        notFound.increment();
+    }
+
+    /**
+     * Records how long a request waited between being accepted and a thread starting to handle it.
+     */
+    public void recordQueueing(long nanos) {
+        queueing.update(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public long getNotFound() {
+        return notFound.sum();
+    }
+
+    @Override
+    public Map<String, Metric> getMetrics() {
+        Map<String, Metric> metrics = new HashMap<>();
+        for (Map.Entry<String, RouteStatistics> route : routes.entrySet()) {
+            String prefix = MetricRegistry.name("tucker", "http", route.getKey().isEmpty() ? "root" : route.getKey().substring(1));
+            RouteStatistics statistics = route.getValue();
+            metrics.put(MetricRegistry.name(prefix, "requests"), (Gauge<Long>) statistics.requests::sum);
+            metrics.put(MetricRegistry.name(prefix, "rejected"), (Gauge<Long>) statistics.rejected::sum);
+            metrics.put(MetricRegistry.name(prefix, "bytes"), (Gauge<Long>) statistics.bytes::sum);
+            metrics.put(MetricRegistry.name(prefix, "latency"), statistics.latency);
+        }
+        metrics.put("tucker.http.notFound", (Gauge<Long>) notFound::sum);
+        metrics.put("tucker.http.queueing", queueing);
+        return metrics;
+    }
+
+    void renderJson(Writer writer) throws IOException {
+        try (JsonGenerator jgen = JSON_FACTORY.createGenerator(writer)) {
+            jgen.writeStartObject();
+            jgen.writeObjectFieldStart("routes");
+            for (Map.Entry<String, RouteStatistics> route : routes.entrySet()) {
+                RouteStatistics statistics = route.getValue();
+                jgen.writeObjectFieldStart(route.getKey().isEmpty() ? "/" : route.getKey());
+                jgen.writeNumberField("requests", statistics.requests.sum());
+                jgen.writeNumberField("rejected", statistics.rejected.sum());
+                jgen.writeNumberField("bytes", statistics.bytes.sum());
+                writeJsonTimer(jgen, "millis", statistics.latency);
+                jgen.writeEndObject();
+            }
+            jgen.writeEndObject();
+            jgen.writeNumberField("notFound", notFound.sum());
+            writeJsonTimer(jgen, "queueingMillis", queueing);
+            jgen.writeEndObject();
+        }
+    }
+
+    private static void writeJsonTimer(JsonGenerator jgen, String name, Timer timer) throws IOException {
+        Snapshot snapshot = timer.getSnapshot();
+        jgen.writeObjectFieldStart(name);
+        jgen.writeNumberField("count", timer.getCount());
+        jgen.writeNumberField("p50", snapshot.getMedian() / NANOS_PER_MILLI);
+        jgen.writeNumberField("p99", snapshot.get99thPercentile() / NANOS_PER_MILLI);
+        jgen.writeNumberField("max", snapshot.getMax() / NANOS_PER_MILLI);
+        jgen.writeEndObject();
+    }
+
+    void renderMetrics(MetricsTextWriter metrics) throws IOException {
+        metrics.family("tucker_http_requests_total", "counter", "Tucker requests served, by route.", null);
+        for (Map.Entry<String, RouteStatistics> route : routes.entrySet()) {
+            metrics.sample("tucker_http_requests_total", route.getValue().requests.sum(), "route", route.getKey());
+        }
+        metrics.family("tucker_http_rejected_total", "counter", "Tucker requests answered with an error status, by route.", null);
+        for (Map.Entry<String, RouteStatistics> route : routes.entrySet()) {
+            metrics.sample("tucker_http_rejected_total", route.getValue().rejected.sum(), "route", route.getKey());
+        }
+        metrics.family("tucker_http_response_bytes_total", "counter", "Tucker response body bytes written, by route.", "bytes");
+        for (Map.Entry<String, RouteStatistics> route : routes.entrySet()) {
+            metrics.sample("tucker_http_response_bytes_total", route.getValue().bytes.sum(), "route", route.getKey());
+        }
+        metrics.family("tucker_http_not_found_total", "counter", "Tucker requests for unknown paths.", null);
+        metrics.sample("tucker_http_not_found_total", notFound.sum());
+
+        metrics.family("tucker_http_request_seconds", "summary", "Tucker time spent handling requests, by route.", "seconds");
+        for (Map.Entry<String, RouteStatistics> route : routes.entrySet()) {
+            writeSummary(metrics, "tucker_http_request_seconds", route.getValue().latency, "route", route.getKey());
+        }
+        metrics.family("tucker_http_queueing_seconds", "summary", "Tucker time requests waited for a handler thread.", "seconds");
+        writeSummary(metrics, "tucker_http_queueing_seconds", queueing);
+    }
+
+    private static void writeSummary(MetricsTextWriter metrics, String name, Timer timer, String... labels) throws IOException {
+        Snapshot snapshot = timer.getSnapshot();
+        String[] quantileLabels = new String[labels.length + 2];
+        System.arraycopy(labels, 0, quantileLabels, 0, labels.length);
+        quantileLabels[labels.length] = "quantile";
+        quantileLabels[labels.length + 1] = "0.5";
+        metrics.sample(name, snapshot.getMedian() / NANOS_PER_SECOND, quantileLabels);
+        quantileLabels[labels.length + 1] = "0.99";
+        metrics.sample(name, snapshot.get99thPercentile() / NANOS_PER_SECOND, quantileLabels);
+        metrics.sample(name + "_count", timer.getCount(), labels);
+    }
+
+    static final class RouteStatistics {
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final Timer latency = new Timer();
+
+        void record(long nanos, long bytesWritten, boolean wasRejected) {
+            requests.increment();
+            bytes.add(bytesWritten);
+            if (wasRejected) {
+                rejected.increment();
+            }
+            latency.update(nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+}
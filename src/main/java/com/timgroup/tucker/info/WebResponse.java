@@ -5,6 +5,27 @@ import java.io.OutputStream;
 
 public interface WebResponse {
 
+    /**
+     * The method of the request being answered.
+     */
+    default String getRequestMethod() {
+        return "GET";
+    }
+
+    /**
+     * The value of the named header on the request being answered, or null if it was not sent.
+     */
+    default String getRequestHeader(String name) {
+        return null;
+    }
+
+    /**
+     * The value of the named query parameter on the request being answered, or null if it was not sent.
+     */
+    default String getRequestParameter(String name) {
+        return null;
+    }
+
     void setHeader(String name, String value) throws IOException;
 
     OutputStream respond(String contentType, String characterEncoding) throws IOException;
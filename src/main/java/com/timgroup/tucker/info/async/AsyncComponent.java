@@ -1,9 +1,24 @@
 package com.timgroup.tucker.info.async;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiFunction;
 import java.util.function.UnaryOperator;
 
@@ -12,22 +27,49 @@ import com.timgroup.tucker.info.Report;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import static com.timgroup.tucker.info.Status.CRITICAL;
 import static com.timgroup.tucker.info.Status.WARNING;
 
 public final class AsyncComponent extends Component {
     
     private static final Logger LOGGER = LoggerFactory.getLogger(AsyncComponent.class);
     private static final AsyncSettings DEFAULT_SETTINGS = AsyncSettings.settings();
+    private static final AtomicInteger CHECK_THREAD_NUMBER = new AtomicInteger();
+    private static final ExecutorService CHECKS = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "Tucker-check-" + CHECK_THREAD_NUMBER.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
 
     private volatile PerishableReport currentReport;
+    private volatile Duration lastUpdateDuration;
+    private volatile Duration currentInterval;
+    private Report lastUpdateReport;
+    private final AtomicReference<Thread> runningCheck = new AtomicReference<>();
+    private final AtomicLong hungUpdates = new AtomicLong();
     private final Component wrapped;
     private final AsyncSettings settings;
     private final List<AsyncComponentListener> listeners = new CopyOnWriteArrayList<>();
+    private final List<AsyncComponentListener> inlineListeners = new CopyOnWriteArrayList<>();
+    private final List<AsyncComponent> dependencies = new CopyOnWriteArrayList<>();
+    private volatile String blockedBy;
+    private volatile ScheduledRefresh scheduledRefresh;
+    private CompletableFuture<Report> pendingRefresh;
+    private long lastRefreshMillis = Long.MIN_VALUE;
+    private boolean refreshRunning;
+    private boolean refreshAgain;
+    private final AtomicReference<Report> pendingUpdate = new AtomicReference<>();
+    private volatile Report lastDelivered;
+    private final List<Runnable> firstUpdateActions = new ArrayList<>();
+    private boolean updatedOnce;
+    private final List<Runnable> blockingChangeActions = new CopyOnWriteArrayList<>();
+    private String lastBlocking;
 
     private AsyncComponent(Component wrapped, AsyncSettings settings) {
         super(wrapped.getId(), wrapped.getLabel());
         this.wrapped = wrapped;
         this.settings = settings;
+        this.currentInterval = settings.repeatInterval;
 
         if (settings.statusUpdateHook != StatusUpdated.NOOP) {
             listeners.add((component, report) -> settings.statusUpdateHook.accept(report));
@@ -62,8 +104,12 @@ public final class AsyncComponent extends Component {
         return copy(wrapped.mapReportHandlingError(handler));
     }
 
+    /**
+     * The copy's updates reach this component's listeners through this component's dispatcher and changed-reports-only
+     * filter, as its own updates do.
+     */
     private AsyncComponent copy(Component underlying) {
-        return wrapping(underlying, settings.withUpdateHook(StatusUpdated.NOOP)).withListener((ac, r) -> safelyInvokeUpdateHook(r));
+        return wrapping(underlying, settings.withUpdateHook(StatusUpdated.NOOP)).withInlineListener((ac, r) -> notifyListeners(r));
     }
 
     public AsyncComponent withListener(AsyncComponentListener listener) {
@@ -71,12 +117,227 @@ public final class AsyncComponent extends Component {
         return this;
     }
 
+    /**
+     * Adds a listener told of every update on the thread that made it, regardless of the listener dispatcher and
+     * changed-reports-only settings, for bookkeeping that must not miss an update, such as a status page's.
+     */
+    public AsyncComponent withInlineListener(AsyncComponentListener listener) {
+        inlineListeners.add(listener);
+        return this;
+    }
+
+    public void removeListener(AsyncComponentListener listener) {
+        listeners.remove(listener);
+        inlineListeners.remove(listener);
+    }
+
+    /**
+     * Removes this component from the scheduler refreshing it, if any, as when it is removed from its status page.
+     */
+    public void cancelScheduledRefresh() {
+        ScheduledRefresh scheduledRefresh = this.scheduledRefresh;
+        if (scheduledRefresh != null) {
+            scheduledRefresh.cancel();
+        }
+    }
+
+    void setScheduledRefresh(ScheduledRefresh scheduledRefresh) {
+        this.scheduledRefresh = scheduledRefresh;
+    }
+
+    /**
+     * Asks for an update now rather than at the next scheduled time, and returns the report it produces. Requests made
+     * before that update starts share it. A request within the refresh limit of the last accepted one is refused with
+     * a {@link RejectedExecutionException}. The update runs on the scheduler, if there is one, so it never overlaps a
+     * scheduled update; otherwise a refresh requested while another is running waits to run straight after it.
+     */
+    public CompletableFuture<Report> refreshNow() {
+        CompletableFuture<Report> refresh;
+        synchronized (this) {
+            if (pendingRefresh != null) {
+                return pendingRefresh;
+            }
+            long now = settings.clock.millis();
+            if (lastRefreshMillis != Long.MIN_VALUE && now - lastRefreshMillis < settings.refreshLimit.toMillis()) {
+                CompletableFuture<Report> refused = new CompletableFuture<>();
+                refused.completeExceptionally(new RejectedExecutionException("component " + getId() + " was refreshed less than " + settings.refreshLimit + " ago"));
+                return refused;
+            }
+            lastRefreshMillis = now;
+            refresh = new CompletableFuture<>();
+            pendingRefresh = refresh;
+        }
+        ScheduledRefresh scheduledRefresh = this.scheduledRefresh;
+        if (scheduledRefresh == null || !scheduledRefresh.runNow()) {
+            refreshUnscheduled();
+        }
+        return refresh;
+    }
+
+    private void refreshUnscheduled() {
+        synchronized (this) {
+            if (refreshRunning) {
+                refreshAgain = true;
+                return;
+            }
+            refreshRunning = true;
+        }
+        CHECKS.execute(this::runRefreshes);
+    }
+
+    private void runRefreshes() {
+        boolean again = true;
+        while (again) {
+            try {
+                update();
+            } finally {
+                synchronized (this) {
+                    again = refreshAgain;
+                    refreshAgain = false;
+                    refreshRunning = again;
+                }
+            }
+        }
+    }
+
+    public Duration getRefreshLimit() {
+        return settings.refreshLimit;
+    }
+
+    /**
+     * Declares that this component's check relies on the given ones. While any of them is critical, or is itself
+     * blocked, updates report this component as blocked by it instead of running the check. A scheduler holds back
+     * this component's first update until theirs have finished, for at most its repeat interval, and updates it again
+     * as soon as one of them starts or stops blocking it.
+     */
+    public AsyncComponent dependingOn(AsyncComponent... upstream) {
+        for (AsyncComponent dependency : upstream) {
+            if (dependency == this || dependency.dependsOn(this)) {
+                throw new IllegalArgumentException("component " + getId() + " cannot depend on " + dependency.getId() + ", which depends on it");
+            }
+            dependencies.add(dependency);
+        }
+        return this;
+    }
+
+    public List<AsyncComponent> getDependencies() {
+        return Collections.unmodifiableList(dependencies);
+    }
+
+    /**
+     * Runs the given action once this component has finished its first update, or straight away if it already has.
+     */
+    void afterFirstUpdate(Runnable action) {
+        synchronized (this) {
+            if (!updatedOnce) {
+                firstUpdateActions.add(action);
+                return;
+            }
+        }
+        action.run();
+    }
+
+    /**
+     * Runs the given action after each update that changes what this component would block its dependents with:
+     * itself when critical, whatever blocked it, or nothing. The first update never counts as a change.
+     */
+    void onBlockingChange(Runnable action) {
+        blockingChangeActions.add(action);
+    }
+
+    void removeBlockingChangeAction(Runnable action) {
+        blockingChangeActions.remove(action);
+    }
+
+    private boolean dependsOn(AsyncComponent other) {
+        for (AsyncComponent dependency : dependencies) {
+            if (dependency == other || dependency.dependsOn(other)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The id of the critical component that blocked the last update, if it was blocked.
+     */
+    public Optional<String> getBlockedBy() {
+        return Optional.ofNullable(blockedBy);
+    }
+
+    private String findBlocker() {
+        for (AsyncComponent dependency : dependencies) {
+            String blocker = dependency.blocking(dependency.getReport());
+            if (blocker != null) {
+                return blocker;
+            }
+        }
+        return null;
+    }
+
+    private String blocking(Report report) {
+        String upstreamBlocker = blockedBy;
+        if (upstreamBlocker != null) {
+            return upstreamBlocker;
+        }
+        return report.getStatus() == CRITICAL ? getId() : null;
+    }
+
     public Duration getRepeatInterval() {
         return this.settings.repeatInterval;
     }
 
     public Duration getStalenessLimit() { return this.settings.stalenessLimit; }
 
+    /**
+     * The delay before the next update, before jitter: the repeat interval unless the schedule is adaptive.
+     */
+    public Duration getCurrentInterval() {
+        return currentInterval;
+    }
+
+    /**
+     * Whether the current report is older than the staleness limit, without producing the report.
+     */
+    public boolean isStale() {
+        return currentReport.isStale();
+    }
+
+    /**
+     * How long the wrapped component took to report in the most recent update, if there has been one.
+     */
+    public Optional<Duration> getLastUpdateDuration() {
+        return Optional.ofNullable(lastUpdateDuration);
+    }
+
+    public boolean hasStaggeredStart() {
+        return this.settings.staggeredStart;
+    }
+
+    public Duration getJitter() {
+        return this.settings.jitter;
+    }
+
+    /**
+     * How long to wait after an update finishes before starting the next: the current interval, moved by up to the
+     * jitter either way.
+     */
+    long nextUpdateDelayNanos() {
+        long interval = currentInterval.toNanos();
+        long jitter = settings.jitter.toNanos();
+        if (jitter == 0) {
+            return interval;
+        }
+        return Math.max(0L, interval + ThreadLocalRandom.current().nextLong(-jitter, jitter + 1));
+    }
+
+    /**
+     * How many updates have timed out waiting for the wrapped component.
+     */
+    public long getHungUpdates() {
+        return hungUpdates.get();
+    }
+
     public long getRepeat() {
         return this.settings.repeatInterval.toNanos();
     }
@@ -86,21 +347,152 @@ public final class AsyncComponent extends Component {
     }
 
     public void update() {
+        CompletableFuture<Report> refresh;
+        synchronized (this) {
+            refresh = pendingRefresh;
+            pendingRefresh = null;
+        }
+        Report report;
         try {
-            Report report = wrapped.getReport();
+            report = check();
             update(report);
+        } catch (RuntimeException | Error e) {
+            if (refresh != null) {
+                refresh.completeExceptionally(e);
+            }
+            throw e;
+        }
+        if (refresh != null) {
+            refresh.complete(report);
+        }
+    }
+
+    private Report check() {
+        String blocker = findBlocker();
+        blockedBy = blocker;
+        if (blocker != null) {
+            lastUpdateDuration = Duration.ZERO;
+            return new Report(WARNING, "blocked by " + blocker);
+        }
+        long started = System.nanoTime();
+        try {
+            Report report = settings.updateTimeout.isZero() ? wrapped.getReport() : reportWithinTimeout();
+            lastUpdateDuration = Duration.ofNanos(System.nanoTime() - started);
+            return report;
         } catch (Throwable e) {
-            update(new Report(WARNING, e));
+            lastUpdateDuration = Duration.ofNanos(System.nanoTime() - started);
             LOGGER.error("unexpected exception in scheduled update of Tucker component {}", wrapped.getId(), e);
+            return new Report(WARNING, e);
         }
     }
     
+    private Report reportWithinTimeout() throws Throwable {
+        Thread hung = runningCheck.get();
+        if (hung != null) {
+            TimeoutException stillRunning = new TimeoutException("Previous update still running, having timed out after " + settings.updateTimeout);
+            stillRunning.setStackTrace(hung.getStackTrace());
+            return new Report(WARNING, stillRunning);
+        }
+        Future<Report> check = CHECKS.submit(() -> {
+            runningCheck.set(Thread.currentThread());
+            try {
+                return wrapped.getReport();
+            } finally {
+                runningCheck.set(null);
+            }
+        });
+        try {
+            return check.get(settings.updateTimeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            TimeoutException timedOut = new TimeoutException("Timed out after " + settings.updateTimeout);
+            Thread running = runningCheck.get();
+            timedOut.setStackTrace(running == null ? new StackTraceElement[0] : running.getStackTrace());
+            check.cancel(true);
+            hungUpdates.incrementAndGet();
+            LOGGER.warn("update of Tucker component {} timed out after {}, interrupted at", wrapped.getId(), settings.updateTimeout, timedOut);
+            return new Report(WARNING, timedOut);
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        } catch (InterruptedException e) {
+            check.cancel(true);
+            Thread.currentThread().interrupt();
+            throw e;
+        }
+    }
+
     private void update(Report report) {
-        currentReport = currentReport.updatedWith(report);
-        safelyInvokeUpdateHook(report);
+        List<Runnable> firstUpdated = Collections.emptyList();
+        boolean blockingChanged;
+        synchronized (this) {
+            Duration interval = nextInterval(lastUpdateReport, report);
+            lastUpdateReport = report;
+            currentInterval = interval;
+            currentReport = currentReport.updatedWith(report, stalenessLimitFor(interval));
+            String blocking = blocking(report);
+            blockingChanged = updatedOnce && !Objects.equals(blocking, lastBlocking);
+            lastBlocking = blocking;
+            if (!updatedOnce) {
+                updatedOnce = true;
+                firstUpdated = new ArrayList<>(firstUpdateActions);
+                firstUpdateActions.clear();
+            }
+        }
+        firstUpdated.forEach(Runnable::run);
+        if (blockingChanged) {
+            blockingChangeActions.forEach(Runnable::run);
+        }
+        safelyInvoke(inlineListeners, report);
+        notifyListeners(report);
+    }
+
+    private void notifyListeners(Report report) {
+        ListenerDispatcher dispatcher = settings.listenerDispatcher;
+        if (dispatcher == null) {
+            deliver(report);
+        } else if (pendingUpdate.getAndSet(report) == null && !dispatcher.enqueue(this)) {
+            pendingUpdate.set(null);
+        }
+    }
+
+    /**
+     * Tells listeners of the latest update not yet delivered, if any; called by the listener dispatcher.
+     */
+    void deliverPendingUpdate() {
+        Report report = pendingUpdate.getAndSet(null);
+        if (report != null) {
+            deliver(report);
+        }
+    }
+
+    private void deliver(Report report) {
+        if (settings.changedReportsOnly && report.equals(lastDelivered)) {
+            return;
+        }
+        lastDelivered = report;
+        safelyInvoke(listeners, report);
+    }
+
+    private Duration nextInterval(Report previous, Report report) {
+        if (report.getStatus() == CRITICAL || report.getStatus() == WARNING
+                || (previous != null && previous.getStatus() != report.getStatus())) {
+            return settings.fastestInterval;
+        }
+        if (report.equals(previous)) {
+            Duration doubled = currentInterval.multipliedBy(2);
+            return doubled.compareTo(settings.slowestInterval) > 0 ? settings.slowestInterval : doubled;
+        }
+        return currentInterval;
+    }
+
+    private Duration stalenessLimitFor(Duration interval) {
+        if (interval.compareTo(settings.repeatInterval) <= 0) {
+            return settings.stalenessLimit;
+        }
+        double ratio = (double) interval.toNanos() / settings.repeatInterval.toNanos();
+        return Duration.ofNanos((long) (settings.stalenessLimit.toNanos() * ratio));
     }
 
-    private void safelyInvokeUpdateHook(Report report) {
+    private void safelyInvoke(List<AsyncComponentListener> listeners, Report report) {
         listeners.forEach(listener -> {
             try {
                 listener.accept(this, report);
@@ -1,22 +1,49 @@
 package com.timgroup.tucker.info.async;
 
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.concurrent.Executors;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 import com.timgroup.tucker.info.Component;
 import com.timgroup.tucker.info.status.StatusPageGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import static java.util.Collections.unmodifiableList;
 
 public class AsyncComponentScheduler {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsyncComponentScheduler.class);
     private static final long NO_INITIAL_DELAY = 0L;
+    private static final String THREAD_NAME_PREFIX = "Tucker-refresh-";
     
     private final List<AsyncComponent> components;
     private final List<ScheduledExecutorService> executors;
+    private final Map<String, ScheduledUpdate> updates = new HashMap<>();
+    private final Map<String, LongAdder> pinnings = new ConcurrentHashMap<>();
+    private int sharedPoolThreads;
+    private boolean virtualThreads;
+    private boolean started;
+    private boolean stopped;
+    private ScheduledExecutorService sharedExecutor;
+    private boolean onVirtualThreads;
+    private AutoCloseable pinningMonitor;
 
     private AsyncComponentScheduler(List<AsyncComponent> components) {
         this.components = components;
@@ -24,7 +51,55 @@ public class AsyncComponentScheduler {
     }
     
     public static AsyncComponentScheduler createFromAsync(List<AsyncComponent> components) {
-        return new AsyncComponentScheduler(unmodifiableList(new ArrayList<>(components)));
+        return new AsyncComponentScheduler(dependenciesFirst(components));
+    }
+
+    /**
+     * Orders components so that each comes after the components it depends on, keeping the given order otherwise:
+     * Kahn's algorithm, taking the earliest ready component each time. Component ids must be unique.
+     */
+    private static List<AsyncComponent> dependenciesFirst(List<AsyncComponent> components) {
+        Map<AsyncComponent, Integer> positions = new IdentityHashMap<>();
+        Set<String> ids = new HashSet<>();
+        List<AsyncComponent> distinct = new ArrayList<>(components.size());
+        for (AsyncComponent component : components) {
+            if (!ids.add(component.getId())) {
+                throw new IllegalArgumentException("duplicate component id " + component.getId());
+            }
+            positions.put(component, distinct.size());
+            distinct.add(component);
+        }
+        int[] waitingOn = new int[distinct.size()];
+        List<List<Integer>> dependents = new ArrayList<>(distinct.size());
+        for (int i = 0; i < distinct.size(); i++) {
+            dependents.add(new ArrayList<>());
+        }
+        for (int i = 0; i < distinct.size(); i++) {
+            for (AsyncComponent dependency : distinct.get(i).getDependencies()) {
+                Integer position = positions.get(dependency);
+                if (position != null) {
+                    waitingOn[i]++;
+                    dependents.get(position).add(i);
+                }
+            }
+        }
+        PriorityQueue<Integer> ready = new PriorityQueue<>();
+        for (int i = 0; i < distinct.size(); i++) {
+            if (waitingOn[i] == 0) {
+                ready.add(i);
+            }
+        }
+        List<AsyncComponent> ordered = new ArrayList<>(distinct.size());
+        while (!ready.isEmpty()) {
+            int next = ready.poll();
+            ordered.add(distinct.get(next));
+            for (int dependent : dependents.get(next)) {
+                if (--waitingOn[dependent] == 0) {
+                    ready.add(dependent);
+                }
+            }
+        }
+        return ordered;
     }
     
     public static AsyncComponentScheduler createFromSynchronous(List<? extends Component> synchronousComponents) {
@@ -54,25 +129,189 @@ public class AsyncComponentScheduler {
         return createFromAsync(asyncComponents);
     }
 
-    public void start() {
-        for (AsyncComponent asyncComponent : components) {
-            ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "Tucker-refresh-" + asyncComponent.getId()));
-            executor.scheduleWithFixedDelay(
-                    asyncComponent::update,
-                    NO_INITIAL_DELAY,
-                    asyncComponent.getRepeatInterval().toNanos(),
-                    TimeUnit.NANOSECONDS);
+    /**
+     * Updates all components on a pool of the given number of threads rather than a thread for each. Each component is
+     * still updated at a fixed delay after its previous update finishes, so never concurrently with itself. Must be
+     * called before {@link #start()}.
+     */
+    public synchronized AsyncComponentScheduler withSharedPool(int threads) {
+        if (threads < 1) throw new IllegalArgumentException("a shared pool needs at least one thread");
+        if (started) throw new IllegalStateException("already started");
+        this.sharedPoolThreads = threads;
+        return this;
+    }
+
+    /**
+     * Updates each component on a virtual thread of its own, started by a single scheduling thread when the update is
+     * due, and logs and counts updates that pin their carrier thread. Needs Java 21; on earlier versions the scheduler
+     * warns and carries on with platform threads. Must be called before {@link #start()}.
+     */
+    public synchronized AsyncComponentScheduler withVirtualThreads() {
+        if (started) throw new IllegalStateException("already started");
+        this.virtualThreads = true;
+        return this;
+    }
+
+    /**
+     * How many times each component's updates have been seen pinning a virtual thread to its carrier, by component id.
+     */
+    public Map<String, Long> getPinnings() {
+        Map<String, Long> counts = new TreeMap<>();
+        pinnings.forEach((id, count) -> counts.put(id, count.sum()));
+        return counts;
+    }
+
+    public synchronized void start() {
+        if (stopped) throw new IllegalStateException("already stopped");
+        long[] initialDelays = initialDelayNanos();
+        if (virtualThreads) {
+            if (VirtualThreads.isAvailable()) {
+                sharedExecutor = newExecutor(1, r -> new Thread(r, THREAD_NAME_PREFIX + "scheduler"));
+                executors.add(sharedExecutor);
+                pinningMonitor = VirtualThreads.monitorPinning(THREAD_NAME_PREFIX, this::pinned);
+                onVirtualThreads = true;
+            } else {
+                LOGGER.warn("virtual threads need Java 21, refreshing Tucker components on platform threads");
+            }
+        }
+        if (sharedExecutor == null && sharedPoolThreads > 0) {
+            AtomicInteger threadNumber = new AtomicInteger();
+            sharedExecutor = newExecutor(sharedPoolThreads, r -> new Thread(r, THREAD_NAME_PREFIX + threadNumber.incrementAndGet()));
+            executors.add(sharedExecutor);
+        }
+        started = true;
+        for (int i = 0; i < components.size(); i++) {
+            schedule(components.get(i), initialDelays[i]);
+        }
+    }
+
+    private void schedule(AsyncComponent asyncComponent, long initialDelayNanos) {
+        ScheduledUpdate update;
+        if (sharedExecutor != null) {
+            update = new ScheduledUpdate(sharedExecutor, asyncComponent, onVirtualThreads, false);
+        } else {
+            ScheduledThreadPoolExecutor executor = newExecutor(1, r -> new Thread(r, THREAD_NAME_PREFIX + asyncComponent.getId()));
             executors.add(executor);
+            update = new ScheduledUpdate(executor, asyncComponent, false, true);
+        }
+        updates.put(asyncComponent.getId(), update);
+        asyncComponent.setScheduledRefresh(new ScheduledRefresh() {
+            @Override
+            public boolean runNow() {
+                return update.runNow();
+            }
+
+            @Override
+            public void cancel() {
+                removeComponent(asyncComponent);
+            }
+        });
+        List<AsyncComponent> upstream = asyncComponent.getDependencies();
+        if (upstream.isEmpty()) {
+            update.scheduleIn(initialDelayNanos);
+        } else {
+            update.scheduleAfter(upstream, initialDelayNanos, initialDelayNanos + asyncComponent.getRepeatInterval().toNanos());
+            update.followBlockingChanges(upstream);
+        }
+    }
+
+    /**
+     * Adds a component, replacing any with the same id. If the scheduler has started, its first update is due
+     * straight away. Must not be called once the scheduler has been stopped.
+     */
+    public synchronized void addComponent(AsyncComponent asyncComponent) {
+        if (stopped) throw new IllegalStateException("already stopped");
+        removeComponent(asyncComponent.getId());
+        components.add(asyncComponent);
+        if (started) {
+            schedule(asyncComponent, NO_INITIAL_DELAY);
+        }
+    }
+
+    /**
+     * Removes the component with the given id and cancels its scheduled updates; one already running is left to
+     * finish. Returns false if there is no such component.
+     */
+    public synchronized boolean removeComponent(String id) {
+        for (AsyncComponent asyncComponent : components) {
+            if (asyncComponent.getId().equals(id)) {
+                return removeComponent(asyncComponent);
+            }
+        }
+        return false;
+    }
+
+    private synchronized boolean removeComponent(AsyncComponent asyncComponent) {
+        if (!components.remove(asyncComponent)) {
+            return false;
+        }
+        asyncComponent.setScheduledRefresh(null);
+        ScheduledUpdate update = updates.remove(asyncComponent.getId());
+        if (update != null) {
+            update.cancel();
+            if (update.ownsExecutor) {
+                executors.remove(update.executor);
+            }
+        }
+        return true;
+    }
+
+    public synchronized List<AsyncComponent> getComponents() {
+        return unmodifiableList(new ArrayList<>(components));
+    }
+
+    /**
+     * Starts components without a staggered start straight away, and spreads the rest over their repeat intervals.
+     */
+    private long[] initialDelayNanos() {
+        long[] delays = new long[components.size()];
+        long staggered = components.stream().filter(AsyncComponent::hasStaggeredStart).count();
+        long position = 0;
+        for (int i = 0; i < components.size(); i++) {
+            AsyncComponent asyncComponent = components.get(i);
+            if (asyncComponent.hasStaggeredStart()) {
+                delays[i] = asyncComponent.getRepeatInterval().toNanos() / staggered * position++;
+            } else {
+                delays[i] = NO_INITIAL_DELAY;
+            }
         }
+        return delays;
+    }
+
+    private static ScheduledThreadPoolExecutor newExecutor(int threads, ThreadFactory threadFactory) {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(threads, threadFactory);
+        executor.setRemoveOnCancelPolicy(true);
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        return executor;
+    }
+
+    private void pinned(String threadName, Duration duration, String blockedAt) {
+        String componentId = threadName.substring(THREAD_NAME_PREFIX.length());
+        pinnings.computeIfAbsent(componentId, id -> new LongAdder()).increment();
+        LOGGER.warn("update of Tucker component {} pinned its carrier thread for {} at {}", componentId, duration, blockedAt);
     }
 
     public void addComponentsTo(StatusPageGenerator generator) {
-        for (AsyncComponent asyncComponent: components) {
+        for (AsyncComponent asyncComponent: getComponents()) {
             generator.addComponent(asyncComponent);
         }
     }
     
     public void stop() throws InterruptedException {
+        List<ScheduledExecutorService> executors;
+        AutoCloseable pinningMonitor;
+        synchronized (this) {
+            stopped = true;
+            executors = new ArrayList<>(this.executors);
+            pinningMonitor = this.pinningMonitor;
+        }
+        if (pinningMonitor != null) {
+            try {
+                pinningMonitor.close();
+            } catch (Exception e) {
+                LOGGER.warn("unable to stop monitoring virtual thread pinning", e);
+            }
+        }
         for (ScheduledExecutorService executor : executors) {
             executor.shutdown();
         }
@@ -80,4 +319,148 @@ public class AsyncComponentScheduler {
             executor.awaitTermination(1, TimeUnit.SECONDS);
         }
     }
+
+    /**
+     * Updates a component and schedules its next update once that has finished, so updates are spaced by the
+     * component's repeat interval and jitter and never overlap. On virtual threads the executor only starts them.
+     */
+    private static final class ScheduledUpdate implements Runnable {
+        private final ScheduledExecutorService executor;
+        private final AsyncComponent asyncComponent;
+        private final boolean onVirtualThread;
+        private final boolean ownsExecutor;
+        private final Runnable rerun = this::runNow;
+        private final List<AsyncComponent> followed = new ArrayList<>();
+        private boolean cancelled;
+        private boolean running;
+        private boolean runAgain;
+        private boolean awaitingUpstream;
+        private ScheduledFuture<?> next;
+
+        ScheduledUpdate(ScheduledExecutorService executor, AsyncComponent asyncComponent, boolean onVirtualThread, boolean ownsExecutor) {
+            this.executor = executor;
+            this.asyncComponent = asyncComponent;
+            this.onVirtualThread = onVirtualThread;
+            this.ownsExecutor = ownsExecutor;
+        }
+
+        synchronized boolean scheduleIn(long delayNanos) {
+            if (cancelled) {
+                return false;
+            }
+            try {
+                next = executor.schedule(this, delayNanos, TimeUnit.NANOSECONDS);
+                return true;
+            } catch (RejectedExecutionException e) {
+                // stopped
+                next = null;
+                return false;
+            }
+        }
+
+        /**
+         * Schedules the first update for the given delay after the given components have all finished their first
+         * updates, or for the longest wait if that comes sooner, so that an upstream component that never reports
+         * cannot hold this one back for ever.
+         */
+        void scheduleAfter(List<AsyncComponent> upstream, long delayNanos, long longestWaitNanos) {
+            synchronized (this) {
+                awaitingUpstream = true;
+                if (!scheduleIn(longestWaitNanos)) {
+                    return;
+                }
+            }
+            AtomicInteger waitingFor = new AtomicInteger(upstream.size());
+            for (AsyncComponent dependency : upstream) {
+                dependency.afterFirstUpdate(() -> {
+                    if (waitingFor.decrementAndGet() == 0) {
+                        upstreamUpdated(delayNanos);
+                    }
+                });
+            }
+        }
+
+        /**
+         * Updates the component straight away whenever one of the given components starts or stops blocking it, so
+         * that it does not go on reporting its own check, or the block, for the rest of its interval.
+         */
+        synchronized void followBlockingChanges(List<AsyncComponent> upstream) {
+            if (cancelled) {
+                return;
+            }
+            for (AsyncComponent dependency : upstream) {
+                dependency.onBlockingChange(rerun);
+                followed.add(dependency);
+            }
+        }
+
+        private synchronized void upstreamUpdated(long delayNanos) {
+            if (!awaitingUpstream || cancelled) {
+                return;
+            }
+            awaitingUpstream = false;
+            if (next == null || next.cancel(false)) {
+                scheduleIn(delayNanos);
+            }
+        }
+
+        /**
+         * Reschedules the pending update to run straight away, or has the running one followed immediately by another.
+         * If the pending update could not be cancelled it has already started, and will do.
+         */
+        synchronized boolean runNow() {
+            if (cancelled) {
+                return false;
+            }
+            awaitingUpstream = false;
+            if (running) {
+                runAgain = true;
+                return true;
+            }
+            if (next != null && !next.cancel(false)) {
+                return !next.isCancelled();
+            }
+            return scheduleIn(NO_INITIAL_DELAY);
+        }
+
+        synchronized void cancel() {
+            cancelled = true;
+            if (next != null) {
+                next.cancel(false);
+            }
+            followed.forEach(dependency -> dependency.removeBlockingChangeAction(rerun));
+            followed.clear();
+            if (ownsExecutor) {
+                executor.shutdown();
+            }
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                if (cancelled) {
+                    return;
+                }
+                awaitingUpstream = false;
+                running = true;
+            }
+            if (onVirtualThread) {
+                VirtualThreads.start(THREAD_NAME_PREFIX + asyncComponent.getId(), this::updateAndReschedule);
+            } else {
+                updateAndReschedule();
+            }
+        }
+
+        private void updateAndReschedule() {
+            try {
+                asyncComponent.update();
+            } finally {
+                synchronized (this) {
+                    running = false;
+                    scheduleIn(runAgain ? NO_INITIAL_DELAY : asyncComponent.nextUpdateDelayNanos());
+                    runAgain = false;
+                }
+            }
+        }
+    }
 }
@@ -11,39 +11,122 @@ public final class AsyncSettings {
     public final Duration repeatInterval;
     public final StatusUpdated statusUpdateHook;
     public final Duration stalenessLimit;
+    public final boolean staggeredStart;
+    public final Duration jitter;
+    public final Duration fastestInterval;
+    public final Duration slowestInterval;
+    public final Duration updateTimeout;
+    public final Duration refreshLimit;
+    public final ListenerDispatcher listenerDispatcher;
+    public final boolean changedReportsOnly;
 
-    private AsyncSettings(Clock clock, Duration repeatInterval, StatusUpdated statusUpdateHook, Duration stalenessLimit) {
+    private AsyncSettings(Clock clock, Duration repeatInterval, StatusUpdated statusUpdateHook, Duration stalenessLimit, boolean staggeredStart, Duration jitter, Duration fastestInterval, Duration slowestInterval, Duration updateTimeout, Duration refreshLimit, ListenerDispatcher listenerDispatcher, boolean changedReportsOnly) {
         this.clock = requireNonNull(clock);
         this.repeatInterval = requireNonNull(repeatInterval);
         this.statusUpdateHook = requireNonNull(statusUpdateHook);
         this.stalenessLimit = requireNonNull(stalenessLimit);
+        this.staggeredStart = staggeredStart;
+        this.jitter = requireNonNull(jitter);
+        this.fastestInterval = requireNonNull(fastestInterval);
+        this.slowestInterval = requireNonNull(slowestInterval);
+        this.updateTimeout = requireNonNull(updateTimeout);
+        this.refreshLimit = requireNonNull(refreshLimit);
+        this.listenerDispatcher = listenerDispatcher;
+        this.changedReportsOnly = changedReportsOnly;
     }
 
     public static AsyncSettings settings() {
-        return new AsyncSettings(Clock.systemDefaultZone(), Duration.ofSeconds(30), StatusUpdated.NOOP, Duration.ofMinutes(5));
+        Duration interval = Duration.ofSeconds(30);
+        return new AsyncSettings(Clock.systemDefaultZone(), interval, StatusUpdated.NOOP, Duration.ofMinutes(5), false, Duration.ZERO, interval, interval, Duration.ZERO, Duration.ofSeconds(10), null, false);
     }
 
     public AsyncSettings withClock(@SuppressWarnings("hiding") Clock clock) {
-        return new AsyncSettings(clock, repeatInterval, statusUpdateHook, stalenessLimit);
+        return new AsyncSettings(clock, repeatInterval, statusUpdateHook, stalenessLimit, staggeredStart, jitter, fastestInterval, slowestInterval, updateTimeout, refreshLimit, listenerDispatcher, changedReportsOnly);
     }
 
     public AsyncSettings withRepeatSchedule(long time, TimeUnit units) {
-        return new AsyncSettings(clock, Duration.ofNanos(units.toNanos(time)), statusUpdateHook, stalenessLimit);
+        return withRepeatSchedule(Duration.ofNanos(units.toNanos(time)));
     }
 
     public AsyncSettings withRepeatSchedule(Duration interval) {
-        return new AsyncSettings(clock, interval, statusUpdateHook, stalenessLimit);
+        return new AsyncSettings(clock, interval, statusUpdateHook, stalenessLimit, staggeredStart, jitter, interval, interval, updateTimeout, refreshLimit, listenerDispatcher, changedReportsOnly);
+    }
+
+    /**
+     * Starts at the repeat interval, doubling it after each update whose report is unchanged and successful, up to
+     * {@code slowest}, and dropping to {@code fastest} as soon as the report changes or is warning or critical. The
+     * staleness limit grows in proportion when the interval is longer than the repeat interval. Set the repeat interval
+     * first, as setting it again makes the schedule fixed.
+     */
+    public AsyncSettings withAdaptiveRepeatSchedule(Duration fastest, Duration slowest) {
+        if (fastest.isNegative() || fastest.isZero() || fastest.compareTo(repeatInterval) > 0 || slowest.compareTo(repeatInterval) < 0) {
+            throw new IllegalArgumentException("adaptive repeat schedule must run from " + fastest + " to " + slowest + " around " + repeatInterval);
+        }
+        return new AsyncSettings(clock, repeatInterval, statusUpdateHook, stalenessLimit, staggeredStart, jitter, fastest, slowest, updateTimeout, refreshLimit, listenerDispatcher, changedReportsOnly);
     }
 
     public AsyncSettings withUpdateHook(StatusUpdated statusUpdated) {
-        return new AsyncSettings(clock, repeatInterval, statusUpdated, stalenessLimit);
+        return new AsyncSettings(clock, repeatInterval, statusUpdated, stalenessLimit, staggeredStart, jitter, fastestInterval, slowestInterval, updateTimeout, refreshLimit, listenerDispatcher, changedReportsOnly);
     }
 
     public AsyncSettings withStalenessLimit(long time, TimeUnit units) {
-        return new AsyncSettings(clock, repeatInterval, statusUpdateHook, Duration.ofNanos(units.toNanos(time)));
+        return new AsyncSettings(clock, repeatInterval, statusUpdateHook, Duration.ofNanos(units.toNanos(time)), staggeredStart, jitter, fastestInterval, slowestInterval, updateTimeout, refreshLimit, listenerDispatcher, changedReportsOnly);
     }
 
     public AsyncSettings withStalenessLimit(Duration duration) {
-        return new AsyncSettings(clock, repeatInterval, statusUpdateHook, duration);
+        return new AsyncSettings(clock, repeatInterval, statusUpdateHook, duration, staggeredStart, jitter, fastestInterval, slowestInterval, updateTimeout, refreshLimit, listenerDispatcher, changedReportsOnly);
+    }
+
+    /**
+     * Spreads the first updates of components with staggered starts evenly over their repeat interval, in the order
+     * they were given to the scheduler, rather than running them all at once. Until its first update a component
+     * reports that it has not yet run.
+     */
+    public AsyncSettings withStaggeredStart() {
+        return new AsyncSettings(clock, repeatInterval, statusUpdateHook, stalenessLimit, true, jitter, fastestInterval, slowestInterval, updateTimeout, refreshLimit, listenerDispatcher, changedReportsOnly);
+    }
+
+    /**
+     * Moves each update by a random amount of up to the given duration either way, so that instances started together
+     * drift apart.
+     */
+    public AsyncSettings withJitter(Duration jitter) {
+        if (jitter.isNegative()) throw new IllegalArgumentException("jitter cannot be negative");
+        return new AsyncSettings(clock, repeatInterval, statusUpdateHook, stalenessLimit, staggeredStart, jitter, fastestInterval, slowestInterval, updateTimeout, refreshLimit, listenerDispatcher, changedReportsOnly);
+    }
+
+    /**
+     * Runs each update's check on a thread of its own and gives up waiting for it after the given time: the check is
+     * interrupted, its stack logged and a warning reported. No new check starts while a timed out one is still running.
+     */
+    public AsyncSettings withUpdateTimeout(Duration timeout) {
+        if (timeout.isNegative() || timeout.isZero()) throw new IllegalArgumentException("update timeout must be positive");
+        return new AsyncSettings(clock, repeatInterval, statusUpdateHook, stalenessLimit, staggeredStart, jitter, fastestInterval, slowestInterval, timeout, refreshLimit, listenerDispatcher, changedReportsOnly);
+    }
+
+    /**
+     * Refuses on-demand refreshes requested within the given time of the last one that was accepted, so that repeated
+     * requests cannot turn the component into a load generator against what it checks. Defaults to ten seconds.
+     */
+    public AsyncSettings withRefreshLimit(Duration minimumInterval) {
+        if (minimumInterval.isNegative()) throw new IllegalArgumentException("refresh limit cannot be negative");
+        return new AsyncSettings(clock, repeatInterval, statusUpdateHook, stalenessLimit, staggeredStart, jitter, fastestInterval, slowestInterval, updateTimeout, minimumInterval, listenerDispatcher, changedReportsOnly);
+    }
+
+    /**
+     * Hands updates to the given dispatcher, which calls listeners and the update hook on its own thread, instead of
+     * calling them on the thread that ran the update. Share one dispatcher between components. Inline listeners, such as
+     * a status page's, are still called on the thread that ran the update.
+     */
+    public AsyncSettings withListenerDispatcher(ListenerDispatcher dispatcher) {
+        return new AsyncSettings(clock, repeatInterval, statusUpdateHook, stalenessLimit, staggeredStart, jitter, fastestInterval, slowestInterval, updateTimeout, refreshLimit, requireNonNull(dispatcher), changedReportsOnly);
+    }
+
+    /**
+     * Tells listeners and the update hook only of reports that differ in status or value from the last one they were
+     * told of. Inline listeners are told of every report.
+     */
+    public AsyncSettings withChangedReportsOnly() {
+        return new AsyncSettings(clock, repeatInterval, statusUpdateHook, stalenessLimit, staggeredStart, jitter, fastestInterval, slowestInterval, updateTimeout, refreshLimit, listenerDispatcher, true);
     }
 }
@@ -0,0 +1,87 @@
+package com.timgroup.tucker.info.async;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Calls the listeners of asynchronous components on a dedicated daemon thread rather than the thread that updated
+ * them, so a slow listener cannot hold up refreshes. Components with undelivered updates wait in a bounded queue,
+ * each at most once: a component updated again before its listeners have run is told only of its latest report. When
+ * the queue is full the update is dropped and counted.
+ */
+public final class ListenerDispatcher implements AutoCloseable {
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private static final int BATCH_SIZE = 64;
+    private static final AtomicInteger DISPATCHER_NUMBER = new AtomicInteger();
+
+    private final BlockingQueue<AsyncComponent> queue;
+    private final LongAdder dropped = new LongAdder();
+    private final Thread thread;
+    private volatile boolean closed;
+
+    private ListenerDispatcher(int capacity) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.thread = new Thread(this::dispatch, "Tucker-listeners-" + DISPATCHER_NUMBER.incrementAndGet());
+        thread.setDaemon(true);
+    }
+
+    public static ListenerDispatcher create() {
+        return create(DEFAULT_CAPACITY);
+    }
+
+    public static ListenerDispatcher create(int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("a listener dispatcher needs room for at least one component");
+        ListenerDispatcher dispatcher = new ListenerDispatcher(capacity);
+        dispatcher.thread.start();
+        return dispatcher;
+    }
+
+    /**
+     * How many updates have been dropped because the queue was full or the dispatcher closed.
+     */
+    public long getDroppedUpdates() {
+        return dropped.sum();
+    }
+
+    public int getQueuedComponents() {
+        return queue.size();
+    }
+
+    boolean enqueue(AsyncComponent component) {
+        if (closed || !queue.offer(component)) {
+            dropped.increment();
+            return false;
+        }
+        return true;
+    }
+
+    private void dispatch() {
+        List<AsyncComponent> batch = new ArrayList<>(BATCH_SIZE);
+        while (!closed) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                continue;
+            }
+            queue.drainTo(batch, BATCH_SIZE - 1);
+            for (AsyncComponent component : batch) {
+                component.deliverPendingUpdate();
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * Stops the dispatcher thread, dropping any updates not yet delivered.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        thread.interrupt();
+    }
+}
@@ -22,12 +22,16 @@ final class PerishableReport {
         this.stalenessLimit = stalenessLimit;
     }
 
-    public PerishableReport updatedWith(Report newReport) {
-        return new PerishableReport(newReport, clock, stalenessLimit);
+    public PerishableReport updatedWith(Report newReport, Duration newStalenessLimit) {
+        return new PerishableReport(newReport, clock, newStalenessLimit);
+    }
+
+    public boolean isStale() {
+        return Duration.between(timestamp, Instant.now(clock)).compareTo(stalenessLimit) > 0;
     }
 
     public Report getPotentiallyStaleReport() {
-        if (Duration.between(timestamp, Instant.now(clock)).compareTo(stalenessLimit) > 0) {
+        if (isStale()) {
             String message = String.format(
                 "Last run at %s (over %s ago): %s",
                 timestamp, stalenessLimit, report.getValue());
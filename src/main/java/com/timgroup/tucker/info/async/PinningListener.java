@@ -0,0 +1,10 @@
+package com.timgroup.tucker.info.async;
+
+import java.time.Duration;
+
+/**
+ * Told when a virtual thread blocked while pinned to its carrier, typically by blocking inside a synchronized block.
+ */
+interface PinningListener {
+    void pinned(String threadName, Duration duration, String blockedAt);
+}
@@ -0,0 +1,15 @@
+package com.timgroup.tucker.info.async;
+
+/**
+ * A scheduler's hold on the updates of a component it refreshes.
+ */
+interface ScheduledRefresh {
+
+    /**
+     * Brings the next update forward to now, or straight after the one running. Returns false if the scheduler can no
+     * longer update the component.
+     */
+    boolean runNow();
+
+    void cancel();
+}
@@ -0,0 +1,25 @@
+package com.timgroup.tucker.info.async;
+
+/**
+ * Virtual threads, which this build does not have, so threads are started as platform daemon threads instead: the
+ * multi-release jar carries a Java 21 version of this class in META-INF/versions/21 that has them.
+ */
+final class VirtualThreads {
+    private VirtualThreads() {
+    }
+
+    static boolean isAvailable() {
+        return false;
+    }
+
+    static Thread start(String name, Runnable task) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    static AutoCloseable monitorPinning(String threadNamePrefix, PinningListener listener) {
+        return () -> { };
+    }
+}
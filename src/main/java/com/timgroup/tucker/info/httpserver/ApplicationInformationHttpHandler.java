@@ -46,7 +46,7 @@ public class ApplicationInformationHttpHandler implements HttpHandler {
         return path != null ? "/" + path : null;
     }
 
-    private String extractParameter(URI uri, String name) {
+    static String extractParameter(URI uri, String name) {
         String queryString = uri.getRawQuery();
         if (queryString == null) {
             return null;
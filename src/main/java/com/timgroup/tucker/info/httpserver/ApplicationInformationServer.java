@@ -2,6 +2,7 @@ package com.timgroup.tucker.info.httpserver;
 
 import com.sun.net.httpserver.HttpServer;
 import com.timgroup.tucker.info.ApplicationInformationHandler;
+import com.timgroup.tucker.info.HandlerStatistics;
 import com.timgroup.tucker.info.Health;
 import com.timgroup.tucker.info.StartupTimer;
 import com.timgroup.tucker.info.Stoppable;
@@ -11,6 +12,7 @@ import java.io.IOException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.URI;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -23,23 +25,25 @@ public class ApplicationInformationServer {
     }
 
     public static ApplicationInformationServer create(int port, StatusPageGenerator statusPage, Stoppable stoppable, Health health) throws IOException {
-        return create(port, new ApplicationInformationHandler(statusPage, stoppable, health), health);
+        return create(port, statusPage, new ApplicationInformationHandler(statusPage, stoppable, health), health);
     }
 
-    private static ApplicationInformationServer create(int port, ApplicationInformationHandler handler, Health health) throws IOException {
-        return new ApplicationInformationServer(port, handler, health);
+    private static ApplicationInformationServer create(int port, StatusPageGenerator statusPage, ApplicationInformationHandler handler, Health health) throws IOException {
+        return new ApplicationInformationServer(port, statusPage, handler, health);
     }
 
     private final String hostname;
+    private final StatusPageGenerator statusPage;
     private final HttpServer server;
     private final StartupTimer startupTimer;
 
-    private ApplicationInformationServer(int port, ApplicationInformationHandler handler, Health health) throws IOException {
+    private ApplicationInformationServer(int port, StatusPageGenerator statusPage, ApplicationInformationHandler handler, Health health) throws IOException {
         this.hostname = defaultHostname();
+        this.statusPage = statusPage;
         URI potentialBaseUri = URI.create(String.format("http://%s:%d/info", hostname, port));
         server = HttpServer.create(new InetSocketAddress(port), 0);
         server.createContext(potentialBaseUri.getPath(), new ApplicationInformationHttpHandler(handler, potentialBaseUri));
-        server.setExecutor(newFixedThreadPool(5, new TuckerThreadFactory()));
+        server.setExecutor(new QueueTimingExecutor(newFixedThreadPool(5, new TuckerThreadFactory()), handler.getStatistics()));
         startupTimer = new StartupTimer(health);
     }
 
@@ -62,9 +66,29 @@ public class ApplicationInformationServer {
 
     public void stop() {
         startupTimer.stop();
+        statusPage.closeChangeSubscriptions();
         server.stop(0);
     }
 
+    private static final class QueueTimingExecutor implements Executor {
+        private final Executor executor;
+        private final HandlerStatistics statistics;
+
+        QueueTimingExecutor(Executor executor, HandlerStatistics statistics) {
+            this.executor = executor;
+            this.statistics = statistics;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            long queued = System.nanoTime();
+            executor.execute(() -> {
+                statistics.recordQueueing(System.nanoTime() - queued);
+                command.run();
+            });
+        }
+    }
+
     private static class TuckerThreadFactory implements ThreadFactory {
         final AtomicInteger threadNumber = new AtomicInteger(1);
 
@@ -20,6 +20,21 @@ public class HttpServerWebResponse implements WebResponse {
         this.base = base;
     }
 
+    @Override
+    public String getRequestMethod() {
+        return exchange.getRequestMethod();
+    }
+
+    @Override
+    public String getRequestHeader(String name) {
+        return exchange.getRequestHeaders().getFirst(name);
+    }
+
+    @Override
+    public String getRequestParameter(String name) {
+        return ApplicationInformationHttpHandler.extractParameter(exchange.getRequestURI(), name);
+    }
+
     @Override
     public void setHeader(String name, String value) throws IOException {
         exchange.getResponseHeaders().add(name, value);
@@ -28,10 +43,19 @@ public class HttpServerWebResponse implements WebResponse {
     @Override
     public OutputStream respond(String contentType, String characterEncoding) throws IOException {
         exchange.getResponseHeaders().add("Content-Type", contentType + ";charset=" + characterEncoding);
-        exchange.sendResponseHeaders(STATUS_OK, 0);
+        exchange.sendResponseHeaders(STATUS_OK, declaredContentLength());
         return exchange.getResponseBody();
     }
 
+    private long declaredContentLength() {
+        String contentLength = exchange.getResponseHeaders().getFirst("Content-Length");
+        if (contentLength == null) {
+            return 0; // chunked
+        }
+        long length = Long.parseLong(contentLength);
+        return length == 0 ? -1 : length;
+    }
+
     @Override
     public void respond(int statusCode) throws IOException {
         exchange.sendResponseHeaders(statusCode, -1);
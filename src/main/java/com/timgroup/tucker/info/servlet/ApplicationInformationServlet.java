@@ -48,11 +48,22 @@ public class ApplicationInformationServlet extends HttpServlet {
     @Override
     public void destroy() {
         startupTimer.stop();
+        statusPage.closeChangeSubscriptions();
     }
 
     @Override
     protected final void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException,
             IOException {
+        handle(request, response);
+    }
+
+    @Override
+    protected final void doPost(HttpServletRequest request, HttpServletResponse response) throws ServletException,
+            IOException {
+        handle(request, response);
+    }
+
+    private void handle(HttpServletRequest request, HttpServletResponse response) throws IOException {
         String path = request.getPathInfo();
         String callback = request.getParameter("callback");
         ServletWebResponse webResponse = new ServletWebResponse(request, response);
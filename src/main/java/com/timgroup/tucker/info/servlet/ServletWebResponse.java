@@ -17,6 +17,21 @@ public class ServletWebResponse implements WebResponse {
         this.response = servletResponse;
     }
 
+    @Override
+    public String getRequestMethod() {
+        return request.getMethod();
+    }
+
+    @Override
+    public String getRequestHeader(String name) {
+        return request.getHeader(name);
+    }
+
+    @Override
+    public String getRequestParameter(String name) {
+        return request.getParameter(name);
+    }
+
     @Override
     public void setHeader(String name, String value) throws IOException {
         response.setHeader(name, value);
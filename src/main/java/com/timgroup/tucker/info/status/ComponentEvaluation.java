@@ -0,0 +1,46 @@
+package com.timgroup.tucker.info.status;
+
+import java.time.Instant;
+
+import com.timgroup.tucker.info.Report;
+
+final class ComponentEvaluation {
+    static final long UNKNOWN_DURATION = -1L;
+
+    private final Report report;
+    private final long sequence;
+    private final long durationNanos;
+    private final Instant completedAt;
+
+    ComponentEvaluation(Report report, long sequence, long durationNanos, Instant completedAt) {
+        this.report = report;
+        this.sequence = sequence;
+        this.durationNanos = durationNanos;
+        this.completedAt = completedAt;
+    }
+
+    Report getReport() {
+        return report;
+    }
+
+    /**
+     * The generator's change sequence number at which this report, or an identical one, first appeared.
+     */
+    long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * How long the component took to produce this report, or {@link #UNKNOWN_DURATION}.
+     */
+    long getDurationNanos() {
+        return durationNanos;
+    }
+
+    /**
+     * When the component last produced this report, or null if it never has.
+     */
+    Instant getCompletedAt() {
+        return completedAt;
+    }
+}
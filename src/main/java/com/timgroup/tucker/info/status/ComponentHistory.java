@@ -0,0 +1,126 @@
+package com.timgroup.tucker.info.status;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.timgroup.tucker.info.Component;
+import com.timgroup.tucker.info.Status;
+
+/**
+ * A copy of a component's recent status transitions, oldest first, and its most recent distinct values.
+ */
+public final class ComponentHistory {
+    private final Component component;
+    private final List<Transition> transitions;
+    private final long totalTransitions;
+    private final List<ValueChange> values;
+    private final Instant timestamp;
+
+    ComponentHistory(Component component, List<Transition> transitions, long totalTransitions, List<ValueChange> values, Instant timestamp) {
+        this.component = component;
+        this.transitions = Collections.unmodifiableList(transitions);
+        this.totalTransitions = totalTransitions;
+        this.values = Collections.unmodifiableList(values);
+        this.timestamp = timestamp;
+    }
+
+    public Component getComponent() {
+        return component;
+    }
+
+    public List<Transition> getTransitions() {
+        return transitions;
+    }
+
+    public List<ValueChange> getValues() {
+        return values;
+    }
+
+    /**
+     * How long the component has been in its current status, or null if it has never been evaluated.
+     */
+    public Duration getInCurrentStatus() {
+        if (transitions.isEmpty()) {
+            return null;
+        }
+        return Duration.between(transitions.get(transitions.size() - 1).getAt(), timestamp);
+    }
+
+    public void renderJson(Writer writer) throws IOException {
+        try (JsonGenerator jgen = StatusPage.JSON_FACTORY.createGenerator(writer)) {
+            jgen.writeStartObject();
+            jgen.writeStringField("id", component.getId());
+            jgen.writeStringField("label", component.getLabel());
+            jgen.writeStringField("timestamp", timestamp.toString());
+            if (!transitions.isEmpty()) {
+                Transition current = transitions.get(transitions.size() - 1);
+                jgen.writeStringField("status", current.getStatus().name().toLowerCase());
+                jgen.writeStringField("since", current.getAt().toString());
+                jgen.writeNumberField("inCurrentStatusMillis", getInCurrentStatus().toMillis());
+            }
+            jgen.writeNumberField("transitionsRecorded", totalTransitions);
+            jgen.writeArrayFieldStart("transitions");
+            for (int i = transitions.size() - 1; i >= 0; i--) {
+                Transition transition = transitions.get(i);
+                Instant until = i == transitions.size() - 1 ? timestamp : transitions.get(i + 1).getAt();
+                jgen.writeStartObject();
+                jgen.writeStringField("status", transition.getStatus().name().toLowerCase());
+                jgen.writeStringField("since", transition.getAt().toString());
+                jgen.writeNumberField("durationMillis", Duration.between(transition.getAt(), until).toMillis());
+                jgen.writeEndObject();
+            }
+            jgen.writeEndArray();
+            jgen.writeArrayFieldStart("values");
+            for (int i = values.size() - 1; i >= 0; i--) {
+                ValueChange value = values.get(i);
+                jgen.writeStartObject();
+                jgen.writeStringField("value", value.getValue());
+                jgen.writeStringField("since", value.getAt().toString());
+                jgen.writeEndObject();
+            }
+            jgen.writeEndArray();
+            jgen.writeEndObject();
+        }
+    }
+
+    public static final class Transition {
+        private final Status status;
+        private final Instant at;
+
+        Transition(Status status, Instant at) {
+            this.status = status;
+            this.at = at;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public Instant getAt() {
+            return at;
+        }
+    }
+
+    public static final class ValueChange {
+        private final String value;
+        private final Instant at;
+
+        ValueChange(String value, Instant at) {
+            this.value = value;
+            this.at = at;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        public Instant getAt() {
+            return at;
+        }
+    }
+}
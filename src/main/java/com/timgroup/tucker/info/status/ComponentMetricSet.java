@@ -0,0 +1,71 @@
+package com.timgroup.tucker.info.status;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.MetricSet;
+import com.timgroup.tucker.info.Component;
+import com.timgroup.tucker.info.async.AsyncComponent;
+
+/**
+ * Gauges for each component's status ordinal, report age, staleness and last evaluation time, and for asynchronous
+ * components how many updates have hung. They read what the generator last recorded, so reporting them never
+ * evaluates a component.
+ */
+final class ComponentMetricSet implements MetricSet {
+    private static final List<String> GAUGES = Arrays.asList("status", "ageMillis", "stale", "evaluationMillis", "hungUpdates");
+
+    private final Collection<ComponentState> components;
+    private final Clock clock;
+
+    ComponentMetricSet(Collection<ComponentState> components, Clock clock) {
+        this.components = components;
+        this.clock = clock;
+    }
+
+    /**
+     * The names of all the gauges a component with the given id may have.
+     */
+    static List<String> namesFor(String componentId) {
+        String prefix = MetricRegistry.name("tucker", "component", componentId);
+        return GAUGES.stream().map(gauge -> MetricRegistry.name(prefix, gauge)).collect(Collectors.toList());
+    }
+
+    @Override
+    public Map<String, Metric> getMetrics() {
+        Map<String, Metric> metrics = new HashMap<>();
+        for (ComponentState state : components) {
+            Component component = state.getComponent();
+            String prefix = MetricRegistry.name("tucker", "component", component.getId());
+            metrics.put(MetricRegistry.name(prefix, "status"), (Gauge<Integer>) () -> {
+                ComponentEvaluation last = state.getLastCompleted();
+                return last == null ? null : last.getReport().getStatus().ordinal();
+            });
+            metrics.put(MetricRegistry.name(prefix, "ageMillis"), (Gauge<Long>) () -> {
+                ComponentEvaluation last = state.getLastCompleted();
+                Instant completedAt = last == null ? null : last.getCompletedAt();
+                return completedAt == null ? null : Duration.between(completedAt, Instant.now(clock)).toMillis();
+            });
+            metrics.put(MetricRegistry.name(prefix, "stale"), (Gauge<Integer>) () ->
+                    component instanceof AsyncComponent && ((AsyncComponent) component).isStale() ? 1 : 0);
+            metrics.put(MetricRegistry.name(prefix, "evaluationMillis"), (Gauge<Double>) () -> {
+                ComponentEvaluation last = state.getLastCompleted();
+                return last == null || last.getDurationNanos() == ComponentEvaluation.UNKNOWN_DURATION ? null : last.getDurationNanos() / 1e6;
+            });
+            if (component instanceof AsyncComponent) {
+                metrics.put(MetricRegistry.name(prefix, "hungUpdates"), (Gauge<Long>) ((AsyncComponent) component)::getHungUpdates);
+            }
+        }
+        return metrics;
+    }
+}
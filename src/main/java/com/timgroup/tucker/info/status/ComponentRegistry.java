@@ -0,0 +1,97 @@
+package com.timgroup.tucker.info.status;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The components of a generator, indexed by id and iterated in the order their ids were first added; replacing a
+ * component keeps its place. Reads do not lock or copy, and writes are serialised. The sequence numbers of the most
+ * recent removals are remembered so that deltas can tell clients to drop those components.
+ */
+final class ComponentRegistry implements Iterable<ComponentState> {
+    static final int DEFAULT_REMEMBERED_REMOVALS = 1024;
+
+    private final ConcurrentHashMap<String, Long> positions = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<Long, ComponentState> inOrder = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<Long, String> removals = new ConcurrentSkipListMap<>();
+    private final int rememberedRemovals;
+    private long nextPosition;
+    private int removalCount;
+    private volatile long forgottenRemovals;
+
+    ComponentRegistry(int rememberedRemovals) {
+        this.rememberedRemovals = rememberedRemovals;
+    }
+
+    ComponentState get(String id) {
+        Long position = positions.get(id);
+        return position == null ? null : inOrder.get(position);
+    }
+
+    /**
+     * Adds the given state, or replaces the one with the same id in place, returning the state replaced.
+     */
+    synchronized ComponentState put(ComponentState state) {
+        String id = state.getComponent().getId();
+        Long position = positions.get(id);
+        if (position == null) {
+            position = nextPosition++;
+            positions.put(id, position);
+            if (removals.values().remove(id)) {
+                removalCount--;
+            }
+        }
+        return inOrder.put(position, state);
+    }
+
+    /**
+     * Removes the state with the given id, remembering its removal under the next sequence number. Returns the state
+     * removed keyed by that sequence number, or null if there is no such state.
+     */
+    synchronized Map.Entry<Long, ComponentState> remove(String id, AtomicLong sequence) {
+        Long position = positions.remove(id);
+        if (position == null) {
+            return null;
+        }
+        long removalSequence = sequence.incrementAndGet();
+        removals.put(removalSequence, id);
+        if (++removalCount > rememberedRemovals) {
+            forgottenRemovals = removals.pollFirstEntry().getKey();
+            removalCount--;
+        }
+        return new AbstractMap.SimpleImmutableEntry<>(removalSequence, inOrder.remove(position));
+    }
+
+    List<ComponentState> snapshot() {
+        return new ArrayList<>(inOrder.values());
+    }
+
+    /**
+     * The remembered removals after the given sequence number, keyed by their sequence numbers.
+     */
+    NavigableMap<Long, String> getRemovalsSince(long since) {
+        NavigableMap<Long, String> tail = removals.tailMap(since, false);
+        return tail.isEmpty() ? Collections.emptyNavigableMap() : new TreeMap<>(tail);
+    }
+
+    /**
+     * Removals with sequence numbers up to this one may have been forgotten.
+     */
+    long getForgottenRemovals() {
+        return forgottenRemovals;
+    }
+
+    @Override
+    public Iterator<ComponentState> iterator() {
+        return inOrder.values().iterator();
+    }
+}
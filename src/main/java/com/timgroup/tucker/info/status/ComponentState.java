@@ -0,0 +1,233 @@
+package com.timgroup.tucker.info.status;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import com.codahale.metrics.Timer;
+import com.timgroup.tucker.info.Component;
+import com.timgroup.tucker.info.Report;
+import com.timgroup.tucker.info.Runbook;
+import com.timgroup.tucker.info.async.AsyncComponent;
+import com.timgroup.tucker.info.async.AsyncComponentListener;
+
+import static com.timgroup.tucker.info.Status.WARNING;
+
+final class ComponentState {
+    static final long MILLIS_PER_MINUTE = 60_000L;
+
+    private final Component component;
+    private final AtomicLong sequence;
+    private final StatusChangeBroadcaster changes;
+    private final Clock clock;
+    private final boolean updatedInBackground;
+    private final StatusHistory history = new StatusHistory(StatusHistory.DEFAULT_TRANSITIONS, StatusHistory.DEFAULT_VALUES);
+    private volatile UptimeLedger uptime;
+    private volatile Timer timer;
+    private volatile AsyncComponentListener asyncListener;
+    private volatile ComponentEvaluation lastCompleted;
+    private ComponentEvaluation lastEvaluated;
+    private PendingEvaluation inFlight;
+    private boolean awaitingEvaluation;
+
+    ComponentState(Component component, AtomicLong sequence, StatusChangeBroadcaster changes, Clock clock) {
+        this.component = component;
+        this.sequence = sequence;
+        this.changes = changes;
+        this.clock = clock;
+        this.updatedInBackground = component instanceof AsyncComponent;
+    }
+
+    Component getComponent() {
+        return component;
+    }
+
+    Timer getTimer() {
+        return timer;
+    }
+
+    void setTimer(Timer timer) {
+        this.timer = timer;
+    }
+
+    AsyncComponentListener getAsyncListener() {
+        return asyncListener;
+    }
+
+    void setAsyncListener(AsyncComponentListener asyncListener) {
+        this.asyncListener = asyncListener;
+    }
+
+    UptimeLedger getUptimeLedger() {
+        return uptime;
+    }
+
+    void setUptimeLedger(UptimeLedger uptime) {
+        this.uptime = uptime;
+    }
+
+    ComponentHistory getHistory() {
+        return history.snapshot(component, Instant.now(clock));
+    }
+
+    ComponentEvaluation getLastCompleted() {
+        return lastCompleted;
+    }
+
+    ComponentEvaluation evaluate(Function<Component, Report> evaluator) {
+        long started = System.nanoTime();
+        Report report = evaluator.apply(component);
+        if (updatedInBackground) {
+            return read(report);
+        }
+        return completed(report, System.nanoTime() - started);
+    }
+
+    /**
+     * Hands an evaluation to the executor, or joins the one already in flight. If the executor refuses it, the
+     * component is reported from its last completed result instead, without running it on the calling thread.
+     */
+    synchronized PendingEvaluation evaluateOn(Executor executor, Function<Component, Report> evaluator) {
+        if (inFlight != null) {
+            return inFlight;
+        }
+        CompletableFuture<Long> started = new CompletableFuture<>();
+        CompletableFuture<ComponentEvaluation> result;
+        try {
+            result = CompletableFuture.supplyAsync(() -> {
+                started.complete(System.nanoTime());
+                return evaluate(evaluator);
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            started.complete(System.nanoTime());
+            return new PendingEvaluation(started, CompletableFuture.completedFuture(degraded("Rejected by the evaluation executor")));
+        }
+        PendingEvaluation evaluation = new PendingEvaluation(started, result);
+        inFlight = evaluation;
+        awaitingEvaluation = true;
+        result.whenComplete((report, t) -> evaluationCompleted(evaluation));
+        return evaluation;
+    }
+
+    private synchronized void evaluationCompleted(PendingEvaluation evaluation) {
+        if (inFlight == evaluation) {
+            inFlight = null;
+        }
+    }
+
+    synchronized ComponentEvaluation completed(Report report) {
+        return completed(report, ComponentEvaluation.UNKNOWN_DURATION);
+    }
+
+    synchronized ComponentEvaluation completed(Report report, long durationNanos) {
+        Timer timer = this.timer;
+        if (timer != null && durationNanos != ComponentEvaluation.UNKNOWN_DURATION) {
+            timer.update(durationNanos, TimeUnit.NANOSECONDS);
+        }
+        Instant now = Instant.now(clock);
+        return evaluated(record(report, durationNanos, now, now.toEpochMilli()));
+    }
+
+    /**
+     * Records a report read from a component that evaluates itself in the background, keeping the timings of its
+     * last update. The status counts towards the minute it was read in, however long ago that update was.
+     */
+    private synchronized ComponentEvaluation read(Report report) {
+        ComponentEvaluation last = lastCompleted;
+        if (last == null) {
+            return evaluated(record(report, ComponentEvaluation.UNKNOWN_DURATION, null, clock.millis()));
+        }
+        return evaluated(record(report, last.getDurationNanos(), last.getCompletedAt(), clock.millis()));
+    }
+
+    private ComponentEvaluation evaluated(ComponentEvaluation evaluation) {
+        lastEvaluated = evaluation;
+        awaitingEvaluation = false;
+        return evaluation;
+    }
+
+    private ComponentEvaluation record(Report report, long durationNanos, Instant completedAt, long epochMillis) {
+        UptimeLedger uptime = this.uptime;
+        if (uptime != null) {
+            uptime.record(Math.floorDiv(epochMillis, MILLIS_PER_MINUTE), report.getStatus());
+        }
+        ComponentEvaluation last = lastCompleted;
+        if (last != null && sameContent(last.getReport(), report)) {
+            lastCompleted = new ComponentEvaluation(report, last.getSequence(), durationNanos, completedAt);
+            return lastCompleted;
+        }
+        recordHistory(last == null ? null : last.getReport(), report, epochMillis);
+        synchronized (changes) {
+            ComponentEvaluation evaluation = new ComponentEvaluation(report, sequence.incrementAndGet(), durationNanos, completedAt);
+            lastCompleted = evaluation;
+            changes.publish(component, evaluation);
+            return evaluation;
+        }
+    }
+
+    private void recordHistory(Report previous, Report report, long epochMillis) {
+        if (previous == null || previous.getStatus() != report.getStatus()) {
+            history.recordTransition(epochMillis, report.getStatus());
+        }
+        String value = StatusPage.displayedValue(report);
+        if (previous == null || !Objects.equals(StatusPage.displayedValue(previous), value)) {
+            history.recordValue(epochMillis, value);
+        }
+    }
+
+    /**
+     * Records a warning in place of an evaluation that overran its deadline, quoting the last report the component
+     * produced, so that the timeout shows up in deltas, change streams and history like any other change. Returns the
+     * evaluation instead if it finished in the meantime.
+     */
+    synchronized ComponentEvaluation timedOut(Duration deadline) {
+        if (!awaitingEvaluation) {
+            return lastCompleted;
+        }
+        return degraded("Timed out after " + deadline);
+    }
+
+    private synchronized ComponentEvaluation degraded(String reason) {
+        ComponentEvaluation last = lastEvaluated;
+        if (last == null) {
+            return record(new Report(WARNING, reason + ", not yet completed"), ComponentEvaluation.UNKNOWN_DURATION, null, clock.millis());
+        }
+        Report lastReport = last.getReport();
+        String message = String.format("%s, last completed: %s", reason, lastReport.getValue());
+        return record(new Report(WARNING.or(lastReport.getStatus()), message, lastReport.getRunbook().orElse(null)), last.getDurationNanos(), last.getCompletedAt(), clock.millis());
+    }
+
+    private static boolean sameContent(Report a, Report b) {
+        return a.getStatus() == b.getStatus()
+                && Objects.equals(StatusPage.displayedValue(a), StatusPage.displayedValue(b))
+                && Objects.equals(a.getRunbook().map(Runbook::getLocation), b.getRunbook().map(Runbook::getLocation));
+    }
+
+    /**
+     * An evaluation handed to an executor: the {@link System#nanoTime()} at which it started running, and its result.
+     */
+    static final class PendingEvaluation {
+        private final CompletableFuture<Long> started;
+        private final CompletableFuture<ComponentEvaluation> result;
+
+        PendingEvaluation(CompletableFuture<Long> started, CompletableFuture<ComponentEvaluation> result) {
+            this.started = started;
+            this.result = result;
+        }
+
+        CompletableFuture<Long> getStarted() {
+            return started;
+        }
+
+        CompletableFuture<ComponentEvaluation> getResult() {
+            return result;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.timgroup.tucker.info.status;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.timgroup.tucker.info.Component;
+import com.timgroup.tucker.info.Report;
+import io.prometheus.client.Collector;
+
+/**
+ * Exposes tucker_component_status for every registered component, asking each generator for its components' reports
+ * once per scrape. Components are keyed by id, so a later registration replaces an earlier one with the same id.
+ */
+final class ComponentStatusCollector extends Collector {
+    private final Map<String, Registration> registrations = new LinkedHashMap<>();
+
+    synchronized void register(StatusPageGenerator generator, ComponentState state) {
+        registrations.put(state.getComponent().getId(), new Registration(generator, state));
+    }
+
+    /**
+     * Stops exposing the given component, unless it has already been replaced by a later registration.
+     */
+    synchronized void unregister(ComponentState state) {
+        String id = state.getComponent().getId();
+        Registration registration = registrations.get(id);
+        if (registration != null && registration.state == state) {
+            registrations.remove(id);
+        }
+    }
+
+    @Override
+    public List<MetricFamilySamples> collect() {
+        Map<StatusPageGenerator, List<ComponentState>> statesByGenerator = new IdentityHashMap<>();
+        synchronized (this) {
+            for (Registration registration : registrations.values()) {
+                statesByGenerator.computeIfAbsent(registration.generator, g -> new ArrayList<>()).add(registration.state);
+            }
+        }
+
+        Map<Component, Report> reports = new LinkedHashMap<>();
+        for (Map.Entry<StatusPageGenerator, List<ComponentState>> entry : statesByGenerator.entrySet()) {
+            reports.putAll(entry.getKey().getReportsForMetrics(entry.getValue()));
+        }
+        return Collections.singletonList(StatusPage.convertToMetrics(reports));
+    }
+
+    private static final class Registration {
+        private final StatusPageGenerator generator;
+        private final ComponentState state;
+
+        Registration(StatusPageGenerator generator, ComponentState state) {
+            this.generator = generator;
+            this.state = state;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.timgroup.tucker.info.status;
+
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+
+/**
+ * The evaluation count and percentiles of a component's timer as they stood when a page was produced.
+ */
+final class EvaluationTimings {
+    private final long count;
+    private final double medianNanos;
+    private final double p99Nanos;
+
+    private EvaluationTimings(long count, double medianNanos, double p99Nanos) {
+        this.count = count;
+        this.medianNanos = medianNanos;
+        this.p99Nanos = p99Nanos;
+    }
+
+    /**
+     * The current readings of the given timer, or null if it has not timed anything yet.
+     */
+    static EvaluationTimings of(Timer timer) {
+        if (timer == null || timer.getCount() == 0) {
+            return null;
+        }
+        Snapshot snapshot = timer.getSnapshot();
+        return new EvaluationTimings(timer.getCount(), snapshot.getMedian(), snapshot.get99thPercentile());
+    }
+
+    long getCount() {
+        return count;
+    }
+
+    double getMedianNanos() {
+        return medianNanos;
+    }
+
+    double getP99Nanos() {
+        return p99Nanos;
+    }
+}
@@ -0,0 +1,106 @@
+package com.timgroup.tucker.info.status;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes metric families in the Prometheus or OpenMetrics text exposition format straight to a writer.
+ */
+public final class MetricsTextWriter {
+    static final String CONTENT_TYPE = "text/plain; version=0.0.4";
+    static final String OPENMETRICS_CONTENT_TYPE = "application/openmetrics-text; version=1.0.0";
+
+    private final Writer writer;
+    private final boolean openMetrics;
+
+    public MetricsTextWriter(Writer writer, boolean openMetrics) {
+        this.writer = writer;
+        this.openMetrics = openMetrics;
+    }
+
+    /**
+     * Starts a family; counters are named with their _total suffix, which OpenMetrics leaves off the family name.
+     * The unit, which may be null, is only written for OpenMetrics.
+     */
+    public MetricsTextWriter family(String name, String type, String help, String unit) throws IOException {
+        String familyName = openMetrics && type.equals("counter") && name.endsWith("_total")
+                ? name.substring(0, name.length() - "_total".length())
+                : name;
+        writer.write("# HELP ");
+        writer.write(familyName);
+        writer.write(' ');
+        writeEscaped(help, openMetrics);
+        writer.write("\n# TYPE ");
+        writer.write(familyName);
+        writer.write(' ');
+        writer.write(type);
+        writer.write('\n');
+        if (openMetrics && unit != null) {
+            writer.write("# UNIT ");
+            writer.write(familyName);
+            writer.write(' ');
+            writer.write(unit);
+            writer.write('\n');
+        }
+        return this;
+    }
+
+    public void finish() throws IOException {
+        if (openMetrics) {
+            writer.write("# EOF\n");
+        }
+    }
+
+    /**
+     * Writes one sample; {@code labels} alternates label names and values.
+     */
+    public MetricsTextWriter sample(String name, double value, String... labels) throws IOException {
+        writer.write(name);
+        if (labels.length > 0) {
+            writer.write('{');
+            for (int i = 0; i < labels.length; i += 2) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writer.write(labels[i]);
+                writer.write("=\"");
+                writeEscaped(labels[i + 1], true);
+                writer.write('"');
+            }
+            writer.write('}');
+        }
+        writer.write(' ');
+        writer.write(formatValue(value));
+        writer.write('\n');
+        return this;
+    }
+
+    private void writeEscaped(String text, boolean escapeQuotes) throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '\\':
+                    writer.write("\\\\");
+                    break;
+                case '\n':
+                    writer.write("\\n");
+                    break;
+                case '"':
+                    writer.write(escapeQuotes ? "\\\"" : "\"");
+                    break;
+                default:
+                    writer.write(c);
+            }
+        }
+    }
+
+    private static String formatValue(double value) {
+        if (value == Double.POSITIVE_INFINITY) {
+            return "+Inf";
+        }
+        if (value == Double.NEGATIVE_INFINITY) {
+            return "-Inf";
+        }
+        return Double.toString(value);
+    }
+}
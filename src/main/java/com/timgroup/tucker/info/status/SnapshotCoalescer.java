@@ -0,0 +1,73 @@
+package com.timgroup.tucker.info.status;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+final class SnapshotCoalescer {
+    private final Supplier<StatusPage> evaluation;
+    private final AtomicReference<CompletableFuture<StatusPage>> inFlight = new AtomicReference<>();
+    private volatile Snapshot latest;
+
+    SnapshotCoalescer(Supplier<StatusPage> evaluation) {
+        this.evaluation = evaluation;
+    }
+
+    StatusPage get(Duration reuseWithin) {
+        Snapshot snapshot = latest;
+        if (snapshot != null && snapshot.ageNanos() < reuseWithin.toNanos()) {
+            return snapshot.page;
+        }
+
+        CompletableFuture<StatusPage> ours = new CompletableFuture<>();
+        while (!inFlight.compareAndSet(null, ours)) {
+            CompletableFuture<StatusPage> theirs = inFlight.get();
+            if (theirs != null) {
+                return joinEvaluation(theirs);
+            }
+        }
+
+        try {
+            StatusPage page = evaluation.get();
+            latest = new Snapshot(page, System.nanoTime());
+            ours.complete(page);
+            return page;
+        } catch (Throwable t) {
+            ours.completeExceptionally(t);
+            throw t;
+        } finally {
+            inFlight.compareAndSet(ours, null);
+        }
+    }
+
+    private static StatusPage joinEvaluation(CompletableFuture<StatusPage> evaluation) {
+        try {
+            return evaluation.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    private static final class Snapshot {
+        private final StatusPage page;
+        private final long evaluatedAtNanos;
+
+        Snapshot(StatusPage page, long evaluatedAtNanos) {
+            this.page = page;
+            this.evaluatedAtNanos = evaluatedAtNanos;
+        }
+
+        long ageNanos() {
+            return System.nanoTime() - evaluatedAtNanos;
+        }
+    }
+}
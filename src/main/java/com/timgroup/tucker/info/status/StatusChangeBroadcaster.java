@@ -0,0 +1,93 @@
+package com.timgroup.tucker.info.status;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.timgroup.tucker.info.Component;
+
+/**
+ * Tells subscriptions of changes. Sequence numbers are allocated and their events published while holding this
+ * broadcaster's monitor, as are subscriptions opened and their replays queued, so every subscription sees events in
+ * sequence order, and its replay and live events neither overlap nor leave a gap.
+ */
+final class StatusChangeBroadcaster {
+    private final String epoch;
+    private final List<StatusChangeSubscription> subscriptions = new CopyOnWriteArrayList<>();
+    private volatile int maxSubscribers;
+    private volatile int bufferSize;
+
+    StatusChangeBroadcaster(String epoch, int maxSubscribers, int bufferSize) {
+        this.epoch = epoch;
+        this.maxSubscribers = maxSubscribers;
+        this.bufferSize = bufferSize;
+    }
+
+    void setLimits(int maxSubscribers, int bufferSize) {
+        this.maxSubscribers = maxSubscribers;
+        this.bufferSize = bufferSize;
+    }
+
+    synchronized StatusChangeSubscription subscribe() {
+        if (subscriptions.size() >= maxSubscribers) {
+            return null;
+        }
+        StatusChangeSubscription subscription = new StatusChangeSubscription(this, bufferSize);
+        subscriptions.add(subscription);
+        return subscription;
+    }
+
+    void unsubscribe(StatusChangeSubscription subscription) {
+        subscriptions.remove(subscription);
+    }
+
+    void closeAll() {
+        for (StatusChangeSubscription subscription : subscriptions) {
+            subscription.close();
+        }
+    }
+
+    void publish(Component component, ComponentEvaluation evaluation) {
+        if (subscriptions.isEmpty()) {
+            return;
+        }
+        StatusChangeEvent event = toEvent(component, evaluation);
+        for (StatusChangeSubscription subscription : subscriptions) {
+            subscription.offer(event);
+        }
+    }
+
+    void publishRemoval(String componentId, long sequence) {
+        if (subscriptions.isEmpty()) {
+            return;
+        }
+        StatusChangeEvent event = toRemovalEvent(componentId, sequence);
+        for (StatusChangeSubscription subscription : subscriptions) {
+            subscription.offer(event);
+        }
+    }
+
+    StatusChangeEvent toEvent(Component component, ComponentEvaluation evaluation) {
+        StringWriter writer = new StringWriter();
+        try (JsonGenerator jgen = StatusPage.JSON_FACTORY.createGenerator(writer)) {
+            StatusPage.writeJsonComponent(jgen, component, evaluation.getReport());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return StatusChangeEvent.change(epoch, evaluation.getSequence(), component.getId(), writer.toString());
+    }
+
+    StatusChangeEvent toRemovalEvent(String componentId, long sequence) {
+        StringWriter writer = new StringWriter();
+        try (JsonGenerator jgen = StatusPage.JSON_FACTORY.createGenerator(writer)) {
+            jgen.writeStartObject();
+            jgen.writeStringField("id", componentId);
+            jgen.writeEndObject();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return StatusChangeEvent.removal(epoch, sequence, componentId, writer.toString());
+    }
+}
@@ -0,0 +1,63 @@
+package com.timgroup.tucker.info.status;
+
+/**
+ * A change to a component's report, with the report rendered as it appears in the JSON status page, or the removal
+ * of a component, rendered as an object holding just its id. A subscription resuming from a change token that is no
+ * longer known starts with a reset, telling the client to drop what it has before the full replay that follows.
+ */
+public final class StatusChangeEvent {
+    private enum Kind { CHANGE, REMOVAL, RESET }
+
+    private final long sequence;
+    private final String changeToken;
+    private final String componentId;
+    private final String json;
+    private final Kind kind;
+
+    private StatusChangeEvent(long sequence, String changeToken, String componentId, String json, Kind kind) {
+        this.sequence = sequence;
+        this.changeToken = changeToken;
+        this.componentId = componentId;
+        this.json = json;
+        this.kind = kind;
+    }
+
+    static StatusChangeEvent change(String epoch, long sequence, String componentId, String json) {
+        return new StatusChangeEvent(sequence, StatusPage.changeToken(epoch, sequence), componentId, json, Kind.CHANGE);
+    }
+
+    static StatusChangeEvent removal(String epoch, long sequence, String componentId, String json) {
+        return new StatusChangeEvent(sequence, StatusPage.changeToken(epoch, sequence), componentId, json, Kind.REMOVAL);
+    }
+
+    static StatusChangeEvent reset(String epoch) {
+        return new StatusChangeEvent(0L, StatusPage.changeToken(epoch, 0L), null, "{}", Kind.RESET);
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * The token to resume a subscription from after this event.
+     */
+    public String getChangeToken() {
+        return changeToken;
+    }
+
+    public String getComponentId() {
+        return componentId;
+    }
+
+    public String getJson() {
+        return json;
+    }
+
+    public boolean isRemoval() {
+        return kind == Kind.REMOVAL;
+    }
+
+    public boolean isReset() {
+        return kind == Kind.RESET;
+    }
+}
@@ -0,0 +1,67 @@
+package com.timgroup.tucker.info.status;
+
+import java.util.Collection;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Receives component changes as they happen, starting with any that happened since the change token it was
+ * opened with. If its consumer falls so far behind that its buffer fills, the subscription is closed rather than
+ * letting events accumulate; the consumer can resubscribe from the last change token it saw.
+ */
+public final class StatusChangeSubscription implements AutoCloseable {
+    private static final StatusChangeEvent CLOSED = StatusChangeEvent.change("", -1L, null, null);
+
+    private final StatusChangeBroadcaster broadcaster;
+    private final BlockingQueue<StatusChangeEvent> events;
+    private volatile boolean open = true;
+
+    StatusChangeSubscription(StatusChangeBroadcaster broadcaster, int bufferSize) {
+        this.broadcaster = broadcaster;
+        this.events = new ArrayBlockingQueue<>(bufferSize + 1);
+    }
+
+    /**
+     * Queues the given events ahead of any live ones, if they fit in the buffer; returns false, queuing nothing, if
+     * they do not.
+     */
+    boolean replay(Collection<StatusChangeEvent> missed) {
+        if (missed.size() > events.remainingCapacity() - 1) {
+            return false;
+        }
+        events.addAll(missed);
+        return true;
+    }
+
+    /**
+     * The next event, or null if none arrives within the timeout or the subscription has been closed.
+     */
+    public StatusChangeEvent poll(long timeout, TimeUnit unit) throws InterruptedException {
+        if (!open) {
+            return null;
+        }
+        StatusChangeEvent event = events.poll(timeout, unit);
+        return event == CLOSED ? null : event;
+    }
+
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() {
+        if (open) {
+            open = false;
+            broadcaster.unsubscribe(this);
+            events.clear();
+            events.offer(CLOSED);
+        }
+    }
+
+    void offer(StatusChangeEvent event) {
+        if (open && (events.remainingCapacity() <= 1 || !events.offer(event))) {
+            close();
+        }
+    }
+}
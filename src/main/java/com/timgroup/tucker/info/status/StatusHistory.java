@@ -0,0 +1,89 @@
+package com.timgroup.tucker.info.status;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.timgroup.tucker.info.Component;
+import com.timgroup.tucker.info.Status;
+
+/**
+ * Fixed-size rings of a component's status transitions and most recent distinct values. Recording does not allocate
+ * or block; a transition is packed into a single long as its epoch millisecond shifted above the status ordinal.
+ * Written by one thread at a time (the owning {@link ComponentState} holds its lock) and read without locking: each
+ * ring has one spare slot for the write in progress, and a reader discards any slot overwritten while it was copying.
+ */
+final class StatusHistory {
+    static final int DEFAULT_TRANSITIONS = 64;
+    static final int DEFAULT_VALUES = 8;
+
+    private static final int STATUS_BITS = 2;
+    private static final long STATUS_MASK = (1L << STATUS_BITS) - 1;
+    private static final Status[] STATUSES = Status.values();
+
+    private final AtomicLongArray transitions;
+    private final AtomicLong transitionCount = new AtomicLong();
+    private final AtomicLongArray valueTimes;
+    private final AtomicReferenceArray<String> values;
+    private final AtomicLong valueCount = new AtomicLong();
+
+    StatusHistory(int transitionCapacity, int valueCapacity) {
+        this.transitions = new AtomicLongArray(transitionCapacity + 1);
+        this.valueTimes = new AtomicLongArray(valueCapacity + 1);
+        this.values = new AtomicReferenceArray<>(valueCapacity + 1);
+    }
+
+    void recordTransition(long epochMillis, Status status) {
+        long count = transitionCount.get();
+        transitions.set((int) (count % transitions.length()), epochMillis << STATUS_BITS | status.ordinal());
+        transitionCount.lazySet(count + 1);
+    }
+
+    void recordValue(long epochMillis, String value) {
+        long count = valueCount.get();
+        int slot = (int) (count % values.length());
+        valueTimes.set(slot, epochMillis);
+        values.set(slot, value);
+        valueCount.lazySet(count + 1);
+    }
+
+    ComponentHistory snapshot(Component component, Instant now) {
+        long countBefore = transitionCount.get();
+        long first = Math.max(0, countBefore + 1 - transitions.length());
+        long[] packed = new long[(int) (countBefore - first)];
+        for (long i = first; i < countBefore; i++) {
+            packed[(int) (i - first)] = transitions.get((int) (i % transitions.length()));
+        }
+        long firstIntact = transitionCount.get() + 1 - transitions.length();
+
+        List<ComponentHistory.Transition> copied = new ArrayList<>(packed.length);
+        for (long i = Math.max(first, firstIntact); i < countBefore; i++) {
+            long transition = packed[(int) (i - first)];
+            copied.add(new ComponentHistory.Transition(
+                    STATUSES[(int) (transition & STATUS_MASK)],
+                    Instant.ofEpochMilli(transition >>> STATUS_BITS)));
+        }
+
+        long valuesBefore = valueCount.get();
+        long firstValue = Math.max(0, valuesBefore + 1 - values.length());
+        long[] times = new long[(int) (valuesBefore - firstValue)];
+        String[] texts = new String[times.length];
+        for (long i = firstValue; i < valuesBefore; i++) {
+            int slot = (int) (i % values.length());
+            times[(int) (i - firstValue)] = valueTimes.get(slot);
+            texts[(int) (i - firstValue)] = values.get(slot);
+        }
+        long firstIntactValue = valueCount.get() + 1 - values.length();
+
+        List<ComponentHistory.ValueChange> copiedValues = new ArrayList<>(times.length);
+        for (long i = Math.max(firstValue, firstIntactValue); i < valuesBefore; i++) {
+            int index = (int) (i - firstValue);
+            copiedValues.add(new ComponentHistory.ValueChange(texts[index], Instant.ofEpochMilli(times[index])));
+        }
+
+        return new ComponentHistory(component, copied, countBefore, copiedValues, now);
+    }
+}
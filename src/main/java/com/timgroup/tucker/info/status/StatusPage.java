@@ -3,6 +3,7 @@ package com.timgroup.tucker.info.status;
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.timgroup.tucker.info.Component;
+import com.timgroup.tucker.info.ContentEncoding;
 import com.timgroup.tucker.info.Health;
 import com.timgroup.tucker.info.Report;
 import com.timgroup.tucker.info.Runbook;
@@ -12,23 +13,37 @@ import io.prometheus.client.Collector;
 import javax.xml.stream.XMLOutputFactory;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.NavigableMap;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 public class StatusPage {
     private static final XMLOutputFactory XML_OUTPUT_FACTORY = XMLOutputFactory.newInstance();
-    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    static final JsonFactory JSON_FACTORY = new JsonFactory();
     public static final List<String> METRIC_LABELS = Arrays.asList("component", "status");
+    public static final String METRICS_CONTENT_TYPE = MetricsTextWriter.CONTENT_TYPE;
+    public static final String OPENMETRICS_CONTENT_TYPE = MetricsTextWriter.OPENMETRICS_CONTENT_TYPE;
+    private static final double NANOS_PER_MILLI = 1e6;
+    private static final String STATUS_METRIC = "tucker_component_status";
+    private static final String STATUS_METRIC_HELP = "Tucker Status Page Component Status converted to metrics.";
+    private static final String[] STATUS_METRIC_VALUES = Arrays.stream(Status.values()).map(status -> status.name().toLowerCase()).toArray(String[]::new);
 
 
     private static final String TAG_APPLICATION = "application";
@@ -45,6 +60,17 @@ public class StatusPage {
     private final Instant timestamp;
     private final Status applicationStatus;
     private final String hostname;
+    private final long sequence;
+    private final String epoch;
+    private final Map<Component, ComponentEvaluation> evaluations;
+    private final Map<Component, EvaluationTimings> evaluationTimings;
+    private final NavigableMap<Long, String> removals;
+    private final long forgottenRemovals;
+    private final AtomicReferenceArray<byte[]> encodedXml = new AtomicReferenceArray<>(Health.State.values().length);
+    private final AtomicReferenceArray<byte[]> encodedJson = new AtomicReferenceArray<>(Health.State.values().length);
+    private final AtomicReferenceArray<byte[]> compressedXml = new AtomicReferenceArray<>(Health.State.values().length * ContentEncoding.values().length);
+    private final AtomicReferenceArray<byte[]> compressedJson = new AtomicReferenceArray<>(Health.State.values().length * ContentEncoding.values().length);
+    private volatile String contentHash;
     
     public StatusPage(String applicationId, Map<Component, Report> componentReports) {
         this(probeHostname(), applicationId, componentReports, Instant.now());
@@ -59,18 +85,199 @@ public class StatusPage {
     }
 
     public StatusPage(String hostname, String applicationId, Map<Component, Report> componentReports, Instant timestamp) {
+        this(hostname, applicationId, componentReports, timestamp, 0L, "", Collections.emptyMap(), Collections.emptyMap(), Collections.emptyNavigableMap(), 0L);
+    }
+
+    /**
+     * @param epoch distinguishes the sequence numbers of this generator from those of any other, or of an earlier process
+     * @param removals the ids of components removed from the generator, keyed by the sequence number of their removal
+     * @param forgottenRemovals the sequence number up to which removals may be missing
+     */
+    StatusPage(String applicationId, Map<Component, Report> componentReports, Instant timestamp, long sequence, String epoch, Map<Component, ComponentEvaluation> evaluations, Map<Component, EvaluationTimings> evaluationTimings, NavigableMap<Long, String> removals, long forgottenRemovals) {
+        this(probeHostname(), applicationId, componentReports, timestamp, sequence, epoch, evaluations, evaluationTimings, removals, forgottenRemovals);
+    }
+
+    private StatusPage(String hostname, String applicationId, Map<Component, Report> componentReports, Instant timestamp, long sequence, String epoch, Map<Component, ComponentEvaluation> evaluations, Map<Component, EvaluationTimings> evaluationTimings, NavigableMap<Long, String> removals, long forgottenRemovals) {
         this.hostname = hostname;
         this.timestamp = timestamp;
         this.applicationId = applicationId;
         this.componentReports = componentReports;
         this.applicationStatus = Report.worstStatus(componentReports.values());
+        this.sequence = sequence;
+        this.epoch = epoch;
+        this.evaluations = evaluations;
+        this.evaluationTimings = evaluationTimings;
+        this.removals = removals;
+        this.forgottenRemovals = forgottenRemovals;
     }
     
     public Status getApplicationStatus() {
         return applicationStatus;
     }
+
+    public Instant getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * The change sequence number of the generator when this page was produced. It increases whenever any component's
+     * report changes, starting again from zero in each generator.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * The sequence number qualified by the generator's epoch, which can be passed back to {@link #renderJsonDelta} to
+     * get just the changes since this page.
+     */
+    public String getChangeToken() {
+        return changeToken(epoch, sequence);
+    }
+
+    static String changeToken(String epoch, long sequence) {
+        return epoch + ":" + sequence;
+    }
+
+    /**
+     * The sequence number in the given change token, or -1 if the token is from another epoch.
+     *
+     * @throws IllegalArgumentException if the token is malformed
+     */
+    static long sequenceSince(String token, String epoch) {
+        int colon = token.lastIndexOf(':');
+        long sequence = -1L;
+        if (colon >= 0) {
+            try {
+                sequence = Long.parseLong(token.substring(colon + 1));
+            } catch (NumberFormatException e) {
+                sequence = -1L;
+            }
+        }
+        if (sequence < 0) {
+            throw new IllegalArgumentException("not a change token: " + token);
+        }
+        return token.substring(0, colon).equals(epoch) ? sequence : -1L;
+    }
+
+    /**
+     * A hash of the application and component details shown on this page, including its change token but excluding
+     * its timestamp and evaluation timings. Two pages with the same hash differ only in when they were produced and in
+     * how long their components have been taking.
+     */
+    public String getContentHash() {
+        String hash = contentHash;
+        if (hash == null) {
+            hash = computeContentHash();
+            contentHash = hash;
+        }
+        return hash;
+    }
+
+    private String computeContentHash() {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        updateDigest(digest, applicationId);
+        updateDigest(digest, hostname);
+        updateDigest(digest, getChangeToken());
+        for (Entry<Component, Report> componentReport : componentReports.entrySet()) {
+            Component component = componentReport.getKey();
+            Report report = componentReport.getValue();
+            updateDigest(digest, component.getId());
+            updateDigest(digest, component.getLabel());
+            updateDigest(digest, report.getStatus().name());
+            updateDigest(digest, displayedValue(report));
+            updateDigest(digest, report.getRunbook().map(Runbook::getLocation).orElse(null));
+        }
+        StringBuilder hex = new StringBuilder();
+        byte[] hash = digest.digest();
+        for (int i = 0; i < 8; i++) {
+            hex.append(String.format("%02x", hash[i]));
+        }
+        return hex.toString();
+    }
+
+    private static void updateDigest(MessageDigest digest, String value) {
+        if (value != null) {
+            digest.update(value.getBytes(StandardCharsets.UTF_8));
+        }
+        digest.update((byte) 0);
+    }
     
     public void render(Writer writer, Health health) throws IOException {
+        render(writer, health.get());
+    }
+
+    /**
+     * The XML rendering of this page for the given health, encoded as UTF-8. Encoded once and then shared.
+     */
+    public byte[] renderBytes(Health.State health) throws IOException {
+        byte[] bytes = encodedXml.get(health.ordinal());
+        if (bytes == null) {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            try (Writer writer = new OutputStreamWriter(buffer, StandardCharsets.UTF_8)) {
+                render(writer, health);
+            }
+            bytes = buffer.toByteArray();
+            if (!encodedXml.compareAndSet(health.ordinal(), null, bytes)) {
+                bytes = encodedXml.get(health.ordinal());
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * The JSON rendering of this page for the given health, encoded as UTF-8. Encoded once and then shared.
+     */
+    public byte[] renderJsonBytes(Health.State health) throws IOException {
+        byte[] bytes = encodedJson.get(health.ordinal());
+        if (bytes == null) {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            try (Writer writer = new OutputStreamWriter(buffer, StandardCharsets.UTF_8)) {
+                renderJson(writer, health);
+            }
+            bytes = buffer.toByteArray();
+            if (!encodedJson.compareAndSet(health.ordinal(), null, bytes)) {
+                bytes = encodedJson.get(health.ordinal());
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * The XML rendering of this page for the given health in the given content coding. Compressed once and then shared.
+     */
+    public byte[] renderBytes(Health.State health, ContentEncoding encoding) throws IOException {
+        return compressed(compressedXml, health, encoding, renderBytes(health));
+    }
+
+    /**
+     * The JSON rendering of this page for the given health in the given content coding. Compressed once and then shared.
+     */
+    public byte[] renderJsonBytes(Health.State health, ContentEncoding encoding) throws IOException {
+        return compressed(compressedJson, health, encoding, renderJsonBytes(health));
+    }
+
+    private static byte[] compressed(AtomicReferenceArray<byte[]> cache, Health.State health, ContentEncoding encoding, byte[] uncompressed) throws IOException {
+        if (encoding == ContentEncoding.identity) {
+            return uncompressed;
+        }
+        int index = health.ordinal() * ContentEncoding.values().length + encoding.ordinal();
+        byte[] bytes = cache.get(index);
+        if (bytes == null) {
+            bytes = encoding.encode(uncompressed);
+            if (!cache.compareAndSet(index, null, bytes)) {
+                bytes = cache.get(index);
+            }
+        }
+        return bytes;
+    }
+
+    private void render(Writer writer, Health.State health) throws IOException {
         try {
             XMLStreamWriter out = XML_OUTPUT_FACTORY.createXMLStreamWriter(writer);
             out.writeStartDocument();
@@ -82,7 +289,7 @@ public class StatusPage {
             out.writeAttribute(ATTR_CLASS, applicationStatus.name().toLowerCase());
             out.writeAttribute(ATTR_HOST, hostname);
 
-            Component healthComponent = Component.supplyInfo("health", "Health", () -> health.get().name());
+            Component healthComponent = Component.info("health", "Health", health.name());
             writeComponentReport(out, healthComponent, healthComponent.getReport());
 
             for (Entry<Component, Report> componentReport : componentReports.entrySet()) {
@@ -147,30 +354,45 @@ public class StatusPage {
 
     public void renderJson(Writer writer, Health.State health) throws IOException {
         try (JsonGenerator jgen = JSON_FACTORY.createGenerator(writer)) {
-            jgen.writeStartObject();
-            jgen.writeStringField(ATTR_ID, applicationId);
-            jgen.writeStringField("status", applicationStatus.name().toLowerCase());
-            jgen.writeStringField("health", health.toString());
-            jgen.writeStringField(ATTR_HOST, hostname);
+            writeJsonHeader(jgen, health);
+            jgen.writeArrayFieldStart("components");
+            for (Map.Entry<Component, Report> componentReport : componentReports.entrySet()) {
+                writeJsonComponent(jgen, componentReport.getKey(), componentReport.getValue(), evaluationTimings.get(componentReport.getKey()));
+            }
+            jgen.writeEndArray();
+            jgen.writeStringField(TAG_TIMESTAMP, timestamp.truncatedTo(ChronoUnit.SECONDS).toString());
+            jgen.writeEndObject();
+        }
+    }
+
+    /**
+     * Renders only the components whose reports have changed since the given change token, and the ids of those
+     * removed since then, or the whole page if the token is from another generator or process, or changes that far
+     * back are not known.
+     *
+     * @throws IllegalArgumentException if the token is malformed
+     */
+    public void renderJsonDelta(Writer writer, Health.State health, String sinceToken) throws IOException {
+        long since = sequenceSince(sinceToken, epoch);
+        if (since < 0 || since > sequence || since < forgottenRemovals) {
+            renderJson(writer, health);
+            return;
+        }
+        try (JsonGenerator jgen = JSON_FACTORY.createGenerator(writer)) {
+            writeJsonHeader(jgen, health);
+            jgen.writeStringField("since", sinceToken);
             jgen.writeArrayFieldStart("components");
             for (Map.Entry<Component, Report> componentReport : componentReports.entrySet()) {
                 Component component = componentReport.getKey();
-                Report report = componentReport.getValue();
-                jgen.writeStartObject();
-                jgen.writeStringField(ATTR_ID, component.getId());
-                jgen.writeStringField("status", report.getStatus().name().toLowerCase());
-                jgen.writeStringField("label", component.getLabel());
-                if (report.hasValue()) {
-                    if (report.isSuccessful()) {
-                        jgen.writeStringField(TAG_VALUE, String.valueOf(report.getValue()));
-                    } else {
-                        jgen.writeStringField(TAG_EXCEPTION, report.getException().getMessage());
-                    }
+                ComponentEvaluation evaluation = evaluations.get(component);
+                if (evaluation != null && evaluation.getSequence() > since) {
+                    writeJsonComponent(jgen, component, componentReport.getValue(), evaluationTimings.get(component));
                 }
-                jgen.writeObjectFieldStart("runbook");
-                jgen.writeStringField("locationUrl", report.getRunbook().map(Runbook::getLocation).orElse(null));
-                jgen.writeEndObject();
-                jgen.writeEndObject();
+            }
+            jgen.writeEndArray();
+            jgen.writeArrayFieldStart("removed");
+            for (String id : removals.subMap(since, false, sequence, true).values()) {
+                jgen.writeString(id);
             }
             jgen.writeEndArray();
             jgen.writeStringField(TAG_TIMESTAMP, timestamp.truncatedTo(ChronoUnit.SECONDS).toString());
@@ -178,23 +400,152 @@ public class StatusPage {
         }
     }
 
+    private void writeJsonHeader(JsonGenerator jgen, Health.State health) throws IOException {
+        jgen.writeStartObject();
+        jgen.writeStringField(ATTR_ID, applicationId);
+        jgen.writeStringField("status", applicationStatus.name().toLowerCase());
+        jgen.writeStringField("health", health.toString());
+        jgen.writeStringField(ATTR_HOST, hostname);
+        jgen.writeNumberField("sequence", sequence);
+        jgen.writeStringField("changeToken", getChangeToken());
+    }
+
+    /**
+     * Renders a single component's report as it appears in the JSON status page.
+     */
+    public static void renderJsonComponent(Writer writer, Component component, Report report) throws IOException {
+        try (JsonGenerator jgen = JSON_FACTORY.createGenerator(writer)) {
+            writeJsonComponent(jgen, component, report);
+        }
+    }
+
+    static void writeJsonComponent(JsonGenerator jgen, Component component, Report report) throws IOException {
+        writeJsonComponent(jgen, component, report, null);
+    }
+
+    private static void writeJsonComponent(JsonGenerator jgen, Component component, Report report, EvaluationTimings timings) throws IOException {
+        jgen.writeStartObject();
+        jgen.writeStringField(ATTR_ID, component.getId());
+        jgen.writeStringField("status", report.getStatus().name().toLowerCase());
+        jgen.writeStringField("label", component.getLabel());
+        if (report.hasValue()) {
+            if (report.isSuccessful()) {
+                jgen.writeStringField(TAG_VALUE, String.valueOf(report.getValue()));
+            } else {
+                jgen.writeStringField(TAG_EXCEPTION, report.getException().getMessage());
+            }
+        }
+        jgen.writeObjectFieldStart("runbook");
+        jgen.writeStringField("locationUrl", report.getRunbook().map(Runbook::getLocation).orElse(null));
+        jgen.writeEndObject();
+        if (timings != null) {
+            jgen.writeObjectFieldStart("evaluationMillis");
+            jgen.writeNumberField("count", timings.getCount());
+            jgen.writeNumberField("p50", timings.getMedianNanos() / NANOS_PER_MILLI);
+            jgen.writeNumberField("p99", timings.getP99Nanos() / NANOS_PER_MILLI);
+            jgen.writeEndObject();
+        }
+        jgen.writeEndObject();
+    }
+
+    static String displayedValue(Report report) {
+        if (!report.hasValue()) {
+            return null;
+        }
+        return report.isSuccessful() ? String.valueOf(report.getValue()) : report.getException().getMessage();
+    }
+
+    /**
+     * Writes the component statuses, timings and numeric values, health and change count of this page in the
+     * Prometheus text format, without building the samples first.
+     */
+    public void renderMetrics(Writer writer, Health.State health) throws IOException {
+        MetricsTextWriter metrics = new MetricsTextWriter(writer, false);
+        renderMetrics(metrics, health);
+        metrics.finish();
+    }
+
+    /**
+     * As {@link #renderMetrics(Writer, Health.State)}, in the OpenMetrics text format.
+     */
+    public void renderOpenMetrics(Writer writer, Health.State health) throws IOException {
+        MetricsTextWriter metrics = new MetricsTextWriter(writer, true);
+        renderMetrics(metrics, health);
+        metrics.finish();
+    }
+
+    /**
+     * Writes this page's metric families to a writer that other families may be added to before it is finished.
+     */
+    public void renderMetrics(MetricsTextWriter metrics, Health.State health) throws IOException {
+        String componentLabel = METRIC_LABELS.get(0);
+        metrics.family(STATUS_METRIC, "gauge", STATUS_METRIC_HELP, null);
+        for (Map.Entry<Component, Report> componentReport : componentReports.entrySet()) {
+            String id = componentReport.getKey().getId();
+            Status reportStatus = componentReport.getValue().getStatus();
+            for (Status status : Status.values()) {
+                metrics.sample(STATUS_METRIC, reportStatus == status ? 1 : 0,
+                        componentLabel, id, METRIC_LABELS.get(1), STATUS_METRIC_VALUES[status.ordinal()]);
+            }
+        }
+
+        metrics.family("tucker_component_evaluation_seconds", "gauge", "Tucker component duration of last evaluation.", "seconds");
+        for (Map.Entry<Component, ComponentEvaluation> evaluation : evaluations.entrySet()) {
+            long durationNanos = evaluation.getValue().getDurationNanos();
+            if (durationNanos != ComponentEvaluation.UNKNOWN_DURATION) {
+                metrics.sample("tucker_component_evaluation_seconds", durationNanos / 1e9, componentLabel, evaluation.getKey().getId());
+            }
+        }
+
+        metrics.family("tucker_component_evaluated_timestamp_seconds", "gauge", "Tucker component time of last evaluation.", "seconds");
+        for (Map.Entry<Component, ComponentEvaluation> evaluation : evaluations.entrySet()) {
+            Instant completedAt = evaluation.getValue().getCompletedAt();
+            if (completedAt != null) {
+                metrics.sample("tucker_component_evaluated_timestamp_seconds", completedAt.toEpochMilli() / 1e3, componentLabel, evaluation.getKey().getId());
+            }
+        }
+
+        metrics.family("tucker_component_value", "gauge", "Tucker component value, for components reporting a number.", null);
+        for (Map.Entry<Component, Report> componentReport : componentReports.entrySet()) {
+            Object value = componentReport.getValue().getValue();
+            if (value instanceof Number) {
+                metrics.sample("tucker_component_value", ((Number) value).doubleValue(), componentLabel, componentReport.getKey().getId());
+            }
+        }
+
+        metrics.family("tucker_health", "gauge", "Tucker application health.", null);
+        for (Health.State state : Health.State.values()) {
+            metrics.sample("tucker_health", state == health ? 1 : 0, "state", state.name());
+        }
+        metrics.family("tucker_component_changes_total", "counter", "Tucker component report changes since startup.", null);
+        metrics.sample("tucker_component_changes_total", sequence);
+    }
+
     public Collector.MetricFamilySamples convertToMetrics() {
-        List<Collector.MetricFamilySamples.Sample> samples = new ArrayList<>(componentReports.size());
+        return convertToMetrics(componentReports);
+    }
+
+    Report getReport(Component component) {
+        return componentReports.get(component);
+    }
+
+    static Collector.MetricFamilySamples convertToMetrics(Map<Component, Report> componentReports) {
+        List<Collector.MetricFamilySamples.Sample> samples = new ArrayList<>(componentReports.size() * Status.values().length);
 
         for (Map.Entry<Component, Report> componentReport : componentReports.entrySet()) {
             for(Status status : Status.values()) {
                 samples.add(new Collector.MetricFamilySamples.Sample(
-                        "tucker_component_status",
+                        STATUS_METRIC,
                         METRIC_LABELS,
-                        Arrays.asList(componentReport.getKey().getId(), status.name().toLowerCase()),
+                        Arrays.asList(componentReport.getKey().getId(), STATUS_METRIC_VALUES[status.ordinal()]),
                         componentReport.getValue().getStatus() == status ? 1 : 0));
             }
         }
 
         return new Collector.MetricFamilySamples(
-                "tucker_component_status",
+                STATUS_METRIC,
                 Collector.Type.GAUGE,
-                "Tucker Status Page Component Status converted to metrics.",
+                STATUS_METRIC_HELP,
                 samples);
 
     }
@@ -1,41 +1,75 @@
 package com.timgroup.tucker.info.status;
 
 import java.io.IOException;
+import java.nio.file.Path;
+import java.security.SecureRandom;
 import java.time.Clock;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Optional;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.MetricSet;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.timgroup.tucker.info.Component;
 import com.timgroup.tucker.info.Report;
 import com.timgroup.tucker.info.Runbook;
 import com.timgroup.tucker.info.Status;
+import com.timgroup.tucker.info.async.AsyncComponent;
+import com.timgroup.tucker.info.async.AsyncComponentListener;
 import com.timgroup.tucker.info.component.SourceRepositoryComponent;
 import com.timgroup.tucker.info.component.VersionComponent;
 import com.timgroup.tucker.info.log.JsonFormatter;
-import io.prometheus.client.Gauge;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import static java.util.Objects.requireNonNull;
+
 public class StatusPageGenerator {
 
     public static final String DTD_FILENAME = "status-page.dtd";
     public static final String CSS_FILENAME = "status-page.css";
 
+    private static final int DEFAULT_MAX_CHANGE_SUBSCRIBERS = 2;
+    private static final int DEFAULT_CHANGE_BUFFER_SIZE = 256;
+
     private static final Logger LOGGER = LoggerFactory.getLogger(StatusPageGenerator.class);
 
-    private static final Gauge STATUS_GAUGE = Gauge.build("tucker_component_status", "Tucker Status Page Component Status converted to metrics.")
-           .labelNames(StatusPage.METRIC_LABELS.toArray(new String[]{}))
-            .register();
+    private static final ComponentStatusCollector STATUS_COLLECTOR = new ComponentStatusCollector().register();
 
     private final String applicationId;
     private final VersionComponent versionComponent;
     private final Clock clock;
-    private final List<Component> components = new CopyOnWriteArrayList<>();
+    private final ComponentRegistry components = new ComponentRegistry(ComponentRegistry.DEFAULT_REMEMBERED_REMOVALS);
+    private final AtomicLong sequence = new AtomicLong();
+    private final String epoch = Long.toHexString(new SecureRandom().nextLong());
+    private final StatusChangeBroadcaster changes = new StatusChangeBroadcaster(epoch, DEFAULT_MAX_CHANGE_SUBSCRIBERS, DEFAULT_CHANGE_BUFFER_SIZE);
+    private volatile Executor executor;
+    private volatile Duration componentDeadline;
+    private volatile Duration pageDeadline;
+    private volatile Duration snapshotReuse;
+    private volatile MetricRegistry metricRegistry;
+    private MetricRegistry componentMetricRegistry;
+    private volatile Duration uptimeHorizon = UptimeLedger.DEFAULT_HORIZON;
+    private volatile Path uptimeDirectory;
+    private final SnapshotCoalescer snapshots = new SnapshotCoalescer(this::evaluateStatusPage);
 
     public StatusPageGenerator(String applicationId, VersionComponent versionComponent) {
         this(applicationId, versionComponent, Clock.systemDefaultZone());
@@ -49,42 +83,420 @@ public class StatusPageGenerator {
         registerMetricsAndAddComponent(new SourceRepositoryComponent(getClass().getClassLoader()));
     }
 
+    /**
+     * Adds a component, or replaces the one with the same id, which keeps its place on the page and its uptime ledger.
+     */
     public void addComponent(Component component) {
         registerMetricsAndAddComponent(component);
     }
 
-    public StatusPage getApplicationReport() {
-        Map<Component, Report> componentReports = new LinkedHashMap<>(components.size());
-        for (Component component : components) {
-            Report report;
+    /**
+     * Removes the component with the given id, along with its metrics. An asynchronous component also stops being
+     * refreshed by its scheduler. Deltas and change subscriptions report the removal. Returns false if there is no
+     * such component.
+     */
+    public boolean removeComponent(String componentId) {
+        Map.Entry<Long, ComponentState> removal;
+        synchronized (changes) {
+            removal = components.remove(componentId, sequence);
+            if (removal == null) {
+                return false;
+            }
+            changes.publishRemoval(componentId, removal.getKey());
+        }
+        ComponentState state = removal.getValue();
+        STATUS_COLLECTOR.unregister(state);
+        MetricRegistry metricRegistry = this.metricRegistry;
+        if (metricRegistry != null && components.get(componentId) == null) {
+            metricRegistry.remove(evaluationTimerName(state.getComponent()));
+        }
+        refreshComponentMetrics(componentId);
+        detach(state);
+        return true;
+    }
+
+    /**
+     * Evaluates components concurrently on the given executor rather than one after another on the calling thread.
+     * Reports are still presented in the order the components were added.
+     */
+    public StatusPageGenerator withParallelEvaluation(Executor executor) {
+        this.executor = requireNonNull(executor);
+        return this;
+    }
+
+    /**
+     * Bounds how long a status page waits for its components. A component that is still running when its own deadline,
+     * or the deadline for the whole page, passes is reported from its last completed result and left to finish in the
+     * background; it is not evaluated again until that evaluation completes. Implies parallel evaluation, on a pool of
+     * daemon threads if no executor has been given.
+     */
+    public StatusPageGenerator withEvaluationDeadlines(Duration componentDeadline, Duration pageDeadline) {
+        this.componentDeadline = requireNonNull(componentDeadline);
+        this.pageDeadline = requireNonNull(pageDeadline);
+        if (executor == null) {
+            executor = Executors.newCachedThreadPool(new EvaluationThreadFactory());
+        }
+        return this;
+    }
+
+    /**
+     * Lets concurrent requests share a single evaluation of the status page rather than each evaluating every
+     * component themselves. Requests arriving within {@code reuseWithin} of the last evaluation completing are given
+     * that snapshot.
+     */
+    public StatusPageGenerator withCoalescedEvaluation(Duration reuseWithin) {
+        this.snapshotReuse = requireNonNull(reuseWithin);
+        return this;
+    }
+
+    public StatusPageGenerator withCoalescedEvaluation() {
+        return withCoalescedEvaluation(Duration.ZERO);
+    }
+
+    /**
+     * Times every evaluation of each component, including the background updates of asynchronous components, into a
+     * timer named tucker.component.&lt;id&gt;.evaluation in the given registry. The median and 99th percentile are
+     * included in the JSON status page.
+     */
+    public StatusPageGenerator withEvaluationTimers(MetricRegistry registry) {
+        this.metricRegistry = requireNonNull(registry);
+        for (ComponentState state : components) {
+            state.setTimer(registry.timer(evaluationTimerName(state.getComponent())));
+        }
+        return this;
+    }
+
+    private static String evaluationTimerName(Component component) {
+        return MetricRegistry.name("tucker", "component", component.getId(), "evaluation");
+    }
+
+    /**
+     * Keeps each component's uptime ledger, one 2-bit status code per minute, for the given horizon rather than the
+     * default 30 days. Ledgers are in memory unless a directory is given, in which case each is mapped from a file
+     * named after its component there, so that it survives restarts.
+     */
+    public StatusPageGenerator withUptimeLedger(Duration horizon, Path directory) {
+        this.uptimeHorizon = requireNonNull(horizon);
+        this.uptimeDirectory = directory;
+        for (ComponentState state : components) {
+            state.setUptimeLedger(newUptimeLedger(state.getComponent()));
+        }
+        return this;
+    }
+
+    public StatusPageGenerator withUptimeLedger(Duration horizon) {
+        return withUptimeLedger(horizon, null);
+    }
+
+    private UptimeLedger newUptimeLedger(Component component) {
+        Path directory = uptimeDirectory;
+        if (directory != null) {
+            Path file = directory.resolve(component.getId().replaceAll("[^A-Za-z0-9._-]", "_") + ".uptime");
             try {
-                report = component.getReport();
-            } catch (Throwable e) {
-                LOGGER.error("exception getting report from component {}", component.getId(), e);
-                report = new Report(e);
+                return UptimeLedger.mapped(file, uptimeHorizon);
+            } catch (IOException e) {
+                LOGGER.warn("unable to map uptime ledger {}, keeping it in memory", file, e);
+            }
+        }
+        return UptimeLedger.inMemory(uptimeHorizon);
+    }
+
+    /**
+     * Minutes spent in each status over the given window, which ends with the current minute, by every component.
+     */
+    public UptimeReport getUptime(Duration window) {
+        return getUptime(components.snapshot(), window);
+    }
+
+    public Optional<UptimeReport> getUptime(String componentId, Duration window) {
+        return Optional.ofNullable(components.get(componentId))
+                .map(state -> getUptime(Collections.singletonList(state), window));
+    }
+
+    private UptimeReport getUptime(List<ComponentState> states, Duration window) {
+        long toMinute = Math.floorDiv(clock.millis(), ComponentState.MILLIS_PER_MINUTE) + 1;
+        long fromMinute = toMinute - window.toMinutes();
+        List<UptimeReport.ComponentUptime> uptimes = new ArrayList<>(states.size());
+        for (ComponentState state : states) {
+            uptimes.add(new UptimeReport.ComponentUptime(state.getComponent(), state.getUptimeLedger().count(fromMinute, toMinute)));
+        }
+        return new UptimeReport(
+                Instant.ofEpochMilli(fromMinute * ComponentState.MILLIS_PER_MINUTE),
+                Instant.ofEpochMilli(toMinute * ComponentState.MILLIS_PER_MINUTE),
+                uptimes);
+    }
+
+    public Duration getUptimeHorizon() {
+        return uptimeHorizon;
+    }
+
+    /**
+     * Dropwizard gauges for the status (the {@link Status} ordinal, critical being 0), report age, staleness and last
+     * evaluation time of every component added so far, and the hung update count of asynchronous ones, named
+     * tucker.component.&lt;id&gt;.*. They read cached state, so reporters never cause an evaluation. Components added
+     * or removed later are not reflected; use {@link #withComponentMetrics} for that.
+     */
+    public MetricSet getComponentMetrics() {
+        return new ComponentMetricSet(components.snapshot(), clock);
+    }
+
+    /**
+     * Registers the gauges of {@link #getComponentMetrics()} with the given registry, and keeps them in step as
+     * components are added, replaced and removed.
+     */
+    public synchronized StatusPageGenerator withComponentMetrics(MetricRegistry registry) {
+        this.componentMetricRegistry = requireNonNull(registry);
+        registry.registerAll(getComponentMetrics());
+        return this;
+    }
+
+    /**
+     * Replaces the gauges for the given id with those of its current component, if there is one.
+     */
+    private synchronized void refreshComponentMetrics(String componentId) {
+        MetricRegistry registry = componentMetricRegistry;
+        if (registry == null) {
+            return;
+        }
+        ComponentMetricSet.namesFor(componentId).forEach(registry::remove);
+        ComponentState current = components.get(componentId);
+        if (current != null) {
+            registry.registerAll(new ComponentMetricSet(Collections.singletonList(current), clock));
+        }
+    }
+
+    /**
+     * How much longer the given page may be handed out to new requests, which is zero unless snapshots are reused.
+     */
+    public Duration getRemainingFreshness(StatusPage page) {
+        Duration snapshotReuse = this.snapshotReuse;
+        if (snapshotReuse == null) {
+            return Duration.ZERO;
+        }
+        Duration remaining = snapshotReuse.minus(Duration.between(page.getTimestamp(), Instant.now(clock)));
+        return remaining.isNegative() ? Duration.ZERO : remaining;
+    }
+
+    public StatusPage getApplicationReport() {
+        Duration snapshotReuse = this.snapshotReuse;
+        if (snapshotReuse == null) {
+            return evaluateStatusPage();
+        }
+        return snapshots.get(snapshotReuse);
+    }
+
+    /**
+     * Reports for the given components, read from the current snapshot when snapshots are reused and evaluated
+     * otherwise. Evaluations for metrics are recorded like any other, but do not log warning and critical reports, so
+     * that every scrape does not repeat the log events of the status page.
+     */
+    Map<Component, Report> getReportsForMetrics(List<ComponentState> states) {
+        Map<Component, Report> reports = new LinkedHashMap<>(states.size());
+        if (snapshotReuse != null) {
+            StatusPage page = getApplicationReport();
+            for (ComponentState state : states) {
+                Report report = page.getReport(state.getComponent());
+                if (report != null) {
+                    reports.put(state.getComponent(), report);
+                }
+            }
+        } else {
+            for (Map.Entry<Component, ComponentEvaluation> evaluation : evaluateAll(states, StatusPageGenerator::evaluateQuietly).entrySet()) {
+                reports.put(evaluation.getKey(), evaluation.getValue().getReport());
+            }
+        }
+        return reports;
+    }
+
+    private StatusPage evaluateStatusPage() {
+        List<ComponentState> states = components.snapshot();
+        Map<Component, ComponentEvaluation> evaluations = evaluateAll(states, this::evaluate);
+
+        Map<Component, EvaluationTimings> evaluationTimings = new HashMap<>();
+        if (metricRegistry != null) {
+            for (ComponentState state : states) {
+                EvaluationTimings timings = EvaluationTimings.of(state.getTimer());
+                if (timings != null) {
+                    evaluationTimings.put(state.getComponent(), timings);
+                }
             }
+        }
 
-            if (Status.CRITICAL.equals(report.getStatus()) || Status.WARNING.equals(report.getStatus())) {
-                try (JsonGenerator jgen = JsonFormatter.generate(LOGGER::info)) {
-                    jgen.writeStartObject();
-                    jgen.writeStringField("eventType", "ComponentStatus");
-                    jgen.writeObjectFieldStart("event");
-                    jgen.writeStringField("id", component.getId());
-                    jgen.writeStringField("label", component.getLabel());
-                    jgen.writeStringField("status", String.valueOf(report.getStatus()));
-                    jgen.writeStringField("value", String.valueOf(report.getValue()));
-                    jgen.writeObjectFieldStart("runbook");
-                    jgen.writeStringField("locationUrl", report.getRunbook().map(Runbook::getLocation).orElse(null));
-                    jgen.writeEndObject();
-                    jgen.writeEndObject();
-                    jgen.writeEndObject();
-                } catch (IOException e) {
+        Map<Component, Report> componentReports = new LinkedHashMap<>(evaluations.size());
+        long pageSequence = 0L;
+        for (Map.Entry<Component, ComponentEvaluation> evaluation : evaluations.entrySet()) {
+            componentReports.put(evaluation.getKey(), evaluation.getValue().getReport());
+            pageSequence = Math.max(pageSequence, evaluation.getValue().getSequence());
+        }
+        NavigableMap<Long, String> removals = components.getRemovalsSince(0L);
+        long forgottenRemovals = components.getForgottenRemovals();
+        if (!removals.isEmpty()) {
+            pageSequence = Math.max(pageSequence, removals.lastKey());
+        }
+        return new StatusPage(applicationId, componentReports, Instant.now(clock), pageSequence, epoch, evaluations, evaluationTimings, removals, forgottenRemovals);
+    }
+
+    private Map<Component, ComponentEvaluation> evaluateAll(List<ComponentState> components, Function<Component, Report> evaluator) {
+        Executor executor = this.executor;
+        Duration componentDeadline = this.componentDeadline;
+        Duration pageDeadline = this.pageDeadline;
+        Map<Component, ComponentEvaluation> evaluations = new LinkedHashMap<>(components.size());
+        if (executor == null) {
+            for (ComponentState state : components) {
+                evaluations.put(state.getComponent(), state.evaluate(evaluator));
+            }
+        } else {
+            long started = System.nanoTime();
+            Map<ComponentState, ComponentState.PendingEvaluation> pendingEvaluations = new LinkedHashMap<>(components.size());
+            for (ComponentState state : components) {
+                pendingEvaluations.put(state, state.evaluateOn(executor, evaluator));
+            }
+            for (Map.Entry<ComponentState, ComponentState.PendingEvaluation> pendingEvaluation : pendingEvaluations.entrySet()) {
+                ComponentState state = pendingEvaluation.getKey();
+                ComponentEvaluation evaluation;
+                if (componentDeadline == null) {
+                    evaluation = pendingEvaluation.getValue().getResult().join();
+                } else {
+                    evaluation = awaitEvaluation(state, pendingEvaluation.getValue(), started, componentDeadline, pageDeadline);
                 }
+                evaluations.put(state.getComponent(), evaluation);
+            }
+        }
+        return evaluations;
+    }
+
+    /**
+     * Waits for an evaluation until the page deadline, measured from when the page started, or the component deadline,
+     * measured from when the evaluation started running, whichever passes first; time spent queued for the executor
+     * only counts against the page.
+     */
+    private ComponentEvaluation awaitEvaluation(ComponentState state, ComponentState.PendingEvaluation pendingEvaluation, long pageStarted, Duration componentDeadline, Duration pageDeadline) {
+        long pageEnds = pageStarted + pageDeadline.toNanos();
+        Duration deadline = pageDeadline;
+        try {
+            long evaluationStarted = pendingEvaluation.getStarted().get(Math.max(pageEnds - System.nanoTime(), 0L), TimeUnit.NANOSECONDS);
+            long componentEnds = evaluationStarted + componentDeadline.toNanos();
+            if (componentEnds - pageEnds < 0) {
+                deadline = componentDeadline;
+            }
+            long ends = deadline == componentDeadline ? componentEnds : pageEnds;
+            return pendingEvaluation.getResult().get(Math.max(ends - System.nanoTime(), 0L), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            LOGGER.warn("timed out waiting for report from component {}", state.getComponent().getId());
+            return state.timedOut(deadline);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return state.timedOut(deadline);
+        } catch (ExecutionException e) {
+            return state.completed(new Report(e.getCause()));
+        }
+    }
+
+    private Report evaluate(Component component) {
+        Report report = evaluateQuietly(component);
+        if (Status.CRITICAL.equals(report.getStatus()) || Status.WARNING.equals(report.getStatus())) {
+            try (JsonGenerator jgen = JsonFormatter.generate(LOGGER::info)) {
+                jgen.writeStartObject();
+                jgen.writeStringField("eventType", "ComponentStatus");
+                jgen.writeObjectFieldStart("event");
+                jgen.writeStringField("id", component.getId());
+                jgen.writeStringField("label", component.getLabel());
+                jgen.writeStringField("status", String.valueOf(report.getStatus()));
+                jgen.writeStringField("value", String.valueOf(report.getValue()));
+                jgen.writeObjectFieldStart("runbook");
+                jgen.writeStringField("locationUrl", report.getRunbook().map(Runbook::getLocation).orElse(null));
+                jgen.writeEndObject();
+                jgen.writeEndObject();
+                jgen.writeEndObject();
+            } catch (IOException e) {
             }
+        }
 
-            componentReports.put(component, report);
+        return report;
+    }
+
+    private static Report evaluateQuietly(Component component) {
+        try {
+            return component.getReport();
+        } catch (Throwable e) {
+            LOGGER.error("exception getting report from component {}", component.getId(), e);
+            return new Report(e);
         }
-        return new StatusPage(applicationId, componentReports, Instant.now(clock));
+    }
+
+    /**
+     * Limits how many change subscriptions may be open at once, and how many events each may have waiting.
+     */
+    public StatusPageGenerator withChangeSubscriptionLimits(int maxSubscribers, int bufferSize) {
+        if (maxSubscribers < 0 || bufferSize < 1) throw new IllegalArgumentException("invalid change subscription limits");
+        changes.setLimits(maxSubscribers, bufferSize);
+        return this;
+    }
+
+    /**
+     * Subscribes to component changes, starting with the current report of every component that has changed since the
+     * given change token and the remembered removals since then, or of every component if the token is null. A token
+     * from another generator or process, or from before the remembered removals, starts the subscription with a reset
+     * followed by every component. Changes are picked up both from status page evaluations and from updates of
+     * asynchronous components. A replay too big for the subscription's buffer is also replaced by a reset followed by
+     * every component, and if even that does not fit the subscription is returned closed. Returns null if the maximum
+     * number of subscriptions are already open.
+     *
+     * @throws IllegalArgumentException if the token is malformed
+     */
+    public StatusChangeSubscription subscribeToChanges(String sinceToken) {
+        long since = sinceToken == null ? 0L : StatusPage.sequenceSince(sinceToken, epoch);
+        synchronized (changes) {
+            boolean reset = since < 0 || since > sequence.get() || since < components.getForgottenRemovals();
+            StatusChangeSubscription subscription = changes.subscribe();
+            if (subscription == null) {
+                return null;
+            }
+            if ((reset || !subscription.replay(changesSince(since, false))) && !subscription.replay(changesSince(0L, true))) {
+                subscription.close();
+            }
+            return subscription;
+        }
+    }
+
+    /**
+     * The current report of every component changed since the given sequence number and the remembered removals since
+     * then, in sequence order; or, for a reset, a reset event followed by every component.
+     */
+    private List<StatusChangeEvent> changesSince(long since, boolean reset) {
+        List<StatusChangeEvent> missed = new ArrayList<>();
+        for (ComponentState state : components) {
+            ComponentEvaluation lastCompleted = state.getLastCompleted();
+            if (lastCompleted != null && lastCompleted.getSequence() > since) {
+                missed.add(changes.toEvent(state.getComponent(), lastCompleted));
+            }
+        }
+        if (!reset) {
+            for (Map.Entry<Long, String> removal : components.getRemovalsSince(since).entrySet()) {
+                missed.add(changes.toRemovalEvent(removal.getValue(), removal.getKey()));
+            }
+        }
+        missed.sort(Comparator.comparingLong(StatusChangeEvent::getSequence));
+        if (reset) {
+            missed.add(0, StatusChangeEvent.reset(epoch));
+        }
+        return missed;
+    }
+
+    public void closeChangeSubscriptions() {
+        changes.closeAll();
+    }
+
+    /**
+     * The recent status transitions and values of the component with the given id, as recorded by status page
+     * evaluations and asynchronous updates; empty if there is no such component.
+     */
+    public Optional<ComponentHistory> getHistory(String componentId) {
+        return Optional.ofNullable(components.get(componentId)).map(ComponentState::getHistory);
+    }
+
+    public Optional<Component> getComponent(String componentId) {
+        return Optional.ofNullable(components.get(componentId)).map(ComponentState::getComponent);
     }
 
     public Component getVersionComponent() {
@@ -92,18 +504,51 @@ public class StatusPageGenerator {
     }
 
     private void registerMetricsAndAddComponent(Component component) {
-        components.add(component);
-        configureStatusMetricsFor(component);
+        ComponentState state = new ComponentState(component, sequence, changes, clock);
+        ComponentState existing = components.get(component.getId());
+        state.setUptimeLedger(existing == null ? newUptimeLedger(component) : existing.getUptimeLedger());
+        MetricRegistry metricRegistry = this.metricRegistry;
+        if (metricRegistry != null) {
+            state.setTimer(metricRegistry.timer(evaluationTimerName(component)));
+        }
+        if (component instanceof AsyncComponent) {
+            AsyncComponentListener listener = (asyncComponent, report) -> state.completed(report,
+                    asyncComponent.getLastUpdateDuration().map(Duration::toNanos).orElse(ComponentEvaluation.UNKNOWN_DURATION));
+            state.setAsyncListener(listener);
+            ((AsyncComponent) component).withInlineListener(listener);
+        }
+        ComponentState replaced = components.put(state);
+        STATUS_COLLECTOR.register(this, state);
+        refreshComponentMetrics(component.getId());
+        if (replaced != null) {
+            detach(replaced);
+        }
     }
 
-    private void configureStatusMetricsFor(Component component) {
-        for(Status status : Status.values()) {
-            STATUS_GAUGE.setChild(new Gauge.Child() {
-                @Override public double get() {
-                    Report report = component.getReport();
-                    return report.getStatus() == status ? 1 : 0;
-                }
-            }, component.getId(), status.name().toLowerCase());
+    /**
+     * Stops a removed or replaced component's updates reaching this generator, and stops refreshing it unless it has
+     * been replaced by itself.
+     */
+    private void detach(ComponentState state) {
+        Component component = state.getComponent();
+        if (component instanceof AsyncComponent) {
+            AsyncComponent asyncComponent = (AsyncComponent) component;
+            asyncComponent.removeListener(state.getAsyncListener());
+            ComponentState current = components.get(component.getId());
+            if (current == null || current.getComponent() != component) {
+                asyncComponent.cancelScheduledRefresh();
+            }
+        }
+    }
+
+    private static class EvaluationThreadFactory implements ThreadFactory {
+        final AtomicInteger threadNumber = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "Tucker-evaluate-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
         }
     }
 }
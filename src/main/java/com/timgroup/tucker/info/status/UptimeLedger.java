@@ -0,0 +1,165 @@
+package com.timgroup.tucker.info.status;
+
+import java.io.IOException;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import com.timgroup.tucker.info.Status;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * A ring of 2-bit codes, one per minute, recording the worst status a component reported in that minute: 0 for no
+ * report, then ok, warning and critical. A minute without a report takes the status last reported by this process,
+ * since it stands until the next one. The words live in a heap {@link LongBuffer}, or one mapped from a file so the
+ * ledger survives restarts; minutes the process was not running are left unknown.
+ */
+final class UptimeLedger {
+    static final Duration DEFAULT_HORIZON = Duration.ofDays(30);
+
+    static final int UNKNOWN = 0;
+    static final int OK = 1;
+    static final int WARNING = 2;
+    static final int CRITICAL = 3;
+
+    private static final long MAGIC = 0x5475636b55707431L;
+    private static final int HEADER_MAGIC = 0;
+    private static final int HEADER_SLOTS = 1;
+    private static final int HEADER_LAST_MINUTE = 2;
+    private static final int HEADER_WORDS = 3;
+    private static final int SLOTS_PER_WORD = 32;
+    private static final long LOW_BITS = 0x5555555555555555L;
+
+    private final LongBuffer words;
+    private final int slots;
+    private int lastCode = UNKNOWN;
+
+    private UptimeLedger(LongBuffer words, int slots) {
+        this.words = words;
+        this.slots = slots;
+        if (words.get(HEADER_MAGIC) != MAGIC || words.get(HEADER_SLOTS) != slots) {
+            for (int i = 0; i < words.capacity(); i++) {
+                words.put(i, 0L);
+            }
+            words.put(HEADER_MAGIC, MAGIC);
+            words.put(HEADER_SLOTS, slots);
+            words.put(HEADER_LAST_MINUTE, -1L);
+        }
+    }
+
+    static UptimeLedger inMemory(Duration horizon) {
+        int slots = slotsFor(horizon);
+        return new UptimeLedger(LongBuffer.allocate(HEADER_WORDS + slots / SLOTS_PER_WORD), slots);
+    }
+
+    /**
+     * A ledger kept in the given file, which is created, or reset if it was written for a different horizon.
+     */
+    static UptimeLedger mapped(Path file, Duration horizon) throws IOException {
+        int slots = slotsFor(horizon);
+        long bytes = (long) (HEADER_WORDS + slots / SLOTS_PER_WORD) * Long.BYTES;
+        try (FileChannel channel = FileChannel.open(file, CREATE, READ, WRITE)) {
+            if (channel.size() != bytes) {
+                channel.truncate(0);
+            }
+            return new UptimeLedger(channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes).asLongBuffer(), slots);
+        }
+    }
+
+    private static int slotsFor(Duration horizon) {
+        long minutes = horizon.toMinutes();
+        if (minutes < 1 || minutes > Integer.MAX_VALUE - SLOTS_PER_WORD) throw new IllegalArgumentException("invalid uptime horizon " + horizon);
+        return (int) ((minutes + SLOTS_PER_WORD - 1) / SLOTS_PER_WORD * SLOTS_PER_WORD);
+    }
+
+    static int codeOf(Status status) {
+        switch (status) {
+            case CRITICAL:
+                return CRITICAL;
+            case WARNING:
+                return WARNING;
+            default:
+                return OK;
+        }
+    }
+
+    Duration getHorizon() {
+        return Duration.ofMinutes(slots);
+    }
+
+    synchronized void record(long epochMinute, Status status) {
+        int code = codeOf(status);
+        long lastMinute = words.get(HEADER_LAST_MINUTE);
+        if (epochMinute > lastMinute) {
+            long fillFrom = lastMinute < 0 ? epochMinute : Math.max(lastMinute + 1, epochMinute - slots + 1);
+            for (long minute = fillFrom; minute < epochMinute; minute++) {
+                put(minute, lastCode);
+            }
+            put(epochMinute, code);
+            words.put(HEADER_LAST_MINUTE, epochMinute);
+        } else if (epochMinute > lastMinute - slots) {
+            put(epochMinute, Math.max(code, get(epochMinute)));
+        }
+        lastCode = code;
+    }
+
+    /**
+     * Counts the minutes in [fromMinute, toMinute) by code, indexed as the codes are numbered. Minutes beyond the
+     * horizon, or after the last report, are counted as unknown.
+     */
+    synchronized long[] count(long fromMinute, long toMinute) {
+        long[] counts = new long[4];
+        long lastMinute = words.get(HEADER_LAST_MINUTE);
+        long from = Math.max(fromMinute, lastMinute + 1 - slots);
+        long to = Math.min(toMinute, lastMinute + 1);
+        if (from < to) {
+            int first = slot(from);
+            int last = slot(to - 1) + 1;
+            if (first < last) {
+                countSlots(first, last, counts);
+            } else {
+                countSlots(first, slots, counts);
+                countSlots(0, last, counts);
+            }
+        }
+        counts[UNKNOWN] = Math.max(0, toMinute - fromMinute) - counts[OK] - counts[WARNING] - counts[CRITICAL];
+        return counts;
+    }
+
+    private void countSlots(int from, int to, long[] counts) {
+        int slot = from;
+        while (slot < to) {
+            int word = slot / SLOTS_PER_WORD;
+            int first = slot % SLOTS_PER_WORD;
+            int last = Math.min(to - word * SLOTS_PER_WORD, SLOTS_PER_WORD);
+            long mask = (last == SLOTS_PER_WORD ? -1L : (1L << 2 * last) - 1) & ~((1L << 2 * first) - 1);
+            long bits = words.get(HEADER_WORDS + word) & mask;
+            long low = bits & LOW_BITS;
+            long high = (bits >>> 1) & LOW_BITS;
+            counts[OK] += Long.bitCount(low & ~high);
+            counts[WARNING] += Long.bitCount(high & ~low);
+            counts[CRITICAL] += Long.bitCount(low & high);
+            slot = word * SLOTS_PER_WORD + last;
+        }
+    }
+
+    private int get(long epochMinute) {
+        int slot = slot(epochMinute);
+        return (int) (words.get(HEADER_WORDS + slot / SLOTS_PER_WORD) >>> 2 * (slot % SLOTS_PER_WORD)) & 3;
+    }
+
+    private void put(long epochMinute, int code) {
+        int slot = slot(epochMinute);
+        int index = HEADER_WORDS + slot / SLOTS_PER_WORD;
+        int shift = 2 * (slot % SLOTS_PER_WORD);
+        words.put(index, words.get(index) & ~(3L << shift) | (long) code << shift);
+    }
+
+    private int slot(long epochMinute) {
+        return (int) Math.floorMod(epochMinute, (long) slots);
+    }
+}
@@ -0,0 +1,107 @@
+package com.timgroup.tucker.info.status;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.timgroup.tucker.info.Component;
+
+/**
+ * How many minutes of a window components spent in each status, read from their uptime ledgers.
+ */
+public final class UptimeReport {
+    private final Instant from;
+    private final Instant to;
+    private final List<ComponentUptime> components;
+
+    UptimeReport(Instant from, Instant to, List<ComponentUptime> components) {
+        this.from = from;
+        this.to = to;
+        this.components = Collections.unmodifiableList(components);
+    }
+
+    public Instant getFrom() {
+        return from;
+    }
+
+    public Instant getTo() {
+        return to;
+    }
+
+    public List<ComponentUptime> getComponents() {
+        return components;
+    }
+
+    public void renderJson(Writer writer) throws IOException {
+        try (JsonGenerator jgen = StatusPage.JSON_FACTORY.createGenerator(writer)) {
+            jgen.writeStartObject();
+            jgen.writeStringField("from", from.toString());
+            jgen.writeStringField("to", to.toString());
+            jgen.writeArrayFieldStart("components");
+            for (ComponentUptime component : components) {
+                jgen.writeStartObject();
+                jgen.writeStringField("id", component.getComponent().getId());
+                jgen.writeStringField("label", component.getComponent().getLabel());
+                jgen.writeObjectFieldStart("minutes");
+                jgen.writeNumberField("ok", component.getOkMinutes());
+                jgen.writeNumberField("warning", component.getWarningMinutes());
+                jgen.writeNumberField("critical", component.getCriticalMinutes());
+                jgen.writeNumberField("unknown", component.getUnknownMinutes());
+                jgen.writeEndObject();
+                double uptime = component.getUptime();
+                if (Double.isNaN(uptime)) {
+                    jgen.writeNullField("uptimePercent");
+                } else {
+                    jgen.writeNumberField("uptimePercent", uptime * 100);
+                }
+                jgen.writeEndObject();
+            }
+            jgen.writeEndArray();
+            jgen.writeEndObject();
+        }
+    }
+
+    public static final class ComponentUptime {
+        private final Component component;
+        private final long[] minutes;
+
+        ComponentUptime(Component component, long[] minutes) {
+            this.component = component;
+            this.minutes = minutes;
+        }
+
+        public Component getComponent() {
+            return component;
+        }
+
+        /**
+         * Minutes reported ok or info.
+         */
+        public long getOkMinutes() {
+            return minutes[UptimeLedger.OK];
+        }
+
+        public long getWarningMinutes() {
+            return minutes[UptimeLedger.WARNING];
+        }
+
+        public long getCriticalMinutes() {
+            return minutes[UptimeLedger.CRITICAL];
+        }
+
+        public long getUnknownMinutes() {
+            return minutes[UptimeLedger.UNKNOWN];
+        }
+
+        /**
+         * The fraction of minutes with a known status that were not critical, or NaN if no minute is known.
+         */
+        public double getUptime() {
+            long known = getOkMinutes() + getWarningMinutes() + getCriticalMinutes();
+            return known == 0 ? Double.NaN : (double) (known - getCriticalMinutes()) / known;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.timgroup.tucker.info.async;
+
+import java.util.List;
+
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedThread;
+import jdk.jfr.consumer.RecordingStream;
+
+/**
+ * Virtual threads, and the jdk.VirtualThreadPinned flight recorder event to see when they pin their carrier.
+ */
+final class VirtualThreads {
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+
+    private VirtualThreads() {
+    }
+
+    static boolean isAvailable() {
+        return true;
+    }
+
+    static Thread start(String name, Runnable task) {
+        return Thread.ofVirtual().name(name).start(task);
+    }
+
+    /**
+     * Streams pinning events for threads whose names start with the given prefix to the listener, until closed. Does
+     * nothing if the flight recorder is unavailable.
+     */
+    static AutoCloseable monitorPinning(String threadNamePrefix, PinningListener listener) {
+        RecordingStream stream;
+        try {
+            stream = new RecordingStream();
+        } catch (RuntimeException | LinkageError e) {
+            return () -> { };
+        }
+        stream.enable(PINNED_EVENT).withStackTrace();
+        stream.onEvent(PINNED_EVENT, event -> {
+            RecordedThread thread = event.getThread();
+            String threadName = thread == null ? null : thread.getJavaName();
+            if (threadName != null && threadName.startsWith(threadNamePrefix)) {
+                listener.pinned(threadName, event.getDuration(), blockedAt(event.getStackTrace() == null ? List.of() : event.getStackTrace().getFrames()));
+            }
+        });
+        stream.startAsync();
+        return stream;
+    }
+
+    private static String blockedAt(List<RecordedFrame> frames) {
+        for (RecordedFrame frame : frames) {
+            if (frame.isJavaFrame() && !frame.getMethod().getType().getName().startsWith("java.")) {
+                return frame.getMethod().getType().getName() + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+            }
+        }
+        return frames.isEmpty() ? "unknown" : frames.get(0).getMethod().getType().getName() + "." + frames.get(0).getMethod().getName();
+    }
+}
@@ -1,16 +1,27 @@
 package com.timgroup.tucker.info;
 
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.timgroup.tucker.info.async.AsyncComponent;
 import com.timgroup.tucker.info.component.VersionComponent;
 import com.timgroup.tucker.info.status.StatusPageGenerator;
 import org.junit.Test;
 
 import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.timgroup.tucker.info.Stoppable.State.safe;
 import static com.timgroup.tucker.info.Stoppable.State.unwise;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
@@ -27,7 +38,8 @@ public class ApplicationInformationHandlerTest {
         }
     };
 
-    private final ApplicationInformationHandler handler = new ApplicationInformationHandler(new StatusPageGenerator("appId", version), stoppable, health);
+    private final StatusPageGenerator statusPage = new StatusPageGenerator("appId", version);
+    private final ApplicationInformationHandler handler = new ApplicationInformationHandler(statusPage, stoppable, health);
 
     @Test
     public void responds_to_version_request_when_null_version() throws Exception {
@@ -155,4 +167,351 @@ public class ApplicationInformationHandlerTest {
 
         verify(responseContent).close();
     }
+
+    @Test
+    public void status_page_is_served_with_its_exact_content_length() throws Exception {
+        StringWebResponse response = new StringWebResponse();
+
+        handler.handle("/status.json", response);
+
+        assertEquals("application/json", response.contentType);
+        assertEquals(String.valueOf(response.body.size()), response.headers.get("Content-Length"));
+    }
+
+    @Test
+    public void jsonp_content_length_includes_the_callback() throws Exception {
+        StringWebResponse response = new StringWebResponse();
+
+        handler.handleJSONP("/status.json", "cb", response);
+
+        assertEquals("application/javascript", response.contentType);
+        assertTrue(response.bodyString().startsWith("cb({"));
+        assertEquals(String.valueOf(response.body.size()), response.headers.get("Content-Length"));
+    }
+
+    @Test
+    public void status_page_carries_an_entity_tag_and_cache_control() throws Exception {
+        StringWebResponse response = new StringWebResponse();
+
+        handler.handle("/status.json", response);
+
+        assertTrue(response.headers.get("ETag").startsWith("W/\""));
+        assertEquals("max-age=0", response.headers.get("Cache-Control"));
+    }
+
+    @Test
+    public void status_page_is_not_modified_when_entity_tag_matches() throws Exception {
+        StringWebResponse first = new StringWebResponse();
+        handler.handle("/status.json", first);
+
+        StringWebResponse second = new StringWebResponse();
+        second.requestHeaders.put("If-None-Match", first.headers.get("ETag"));
+        handler.handle("/status.json", second);
+
+        assertEquals(304, second.statusCode);
+        assertEquals(0, second.body.size());
+    }
+
+    @Test
+    public void status_page_is_served_when_entity_tag_no_longer_matches() throws Exception {
+        StringWebResponse first = new StringWebResponse();
+        handler.handle("/status.json", first);
+
+        versionString = "1";
+        StringWebResponse second = new StringWebResponse();
+        second.requestHeaders.put("If-None-Match", first.headers.get("ETag"));
+        handler.handle("/status.json", second);
+
+        assertEquals(0, second.statusCode);
+        assertTrue(second.body.size() > 0);
+    }
+
+    @Test
+    public void status_json_since_a_change_token_returns_a_delta() throws Exception {
+        String token = statusPage.getApplicationReport().getChangeToken();
+        StringWebResponse response = new StringWebResponse();
+        response.requestParameters.put("since", token);
+
+        handler.handle("/status.json", response);
+
+        assertEquals("application/json", response.contentType);
+        assertTrue(response.bodyString().contains("\"since\":\"" + token + "\""));
+        assertTrue(response.bodyString().contains("\"removed\":[]"));
+    }
+
+    @Test
+    public void status_json_since_rejects_a_malformed_change_token() throws Exception {
+        StringWebResponse response = new StringWebResponse();
+        response.requestParameters.put("since", "yesterday");
+
+        handler.handle("/status.json", response);
+
+        assertEquals(400, response.statusCode);
+    }
+
+    @Test
+    public void status_stream_is_unavailable_when_no_more_subscribers_are_allowed() throws Exception {
+        StatusPageGenerator statusPage = new StatusPageGenerator("appId", version).withChangeSubscriptionLimits(0, 1);
+        ApplicationInformationHandler handler = new ApplicationInformationHandler(statusPage, stoppable, health);
+        StringWebResponse response = new StringWebResponse();
+
+        handler.handle("/status/stream", response);
+
+        assertEquals(503, response.statusCode);
+    }
+
+    @Test
+    public void status_stream_from_an_unknown_change_token_starts_with_a_reset() throws Exception {
+        String latest = "id: " + statusPage.getApplicationReport().getChangeToken() + "\n";
+        CountDownLatch latestSent = new CountDownLatch(1);
+        StringWebResponse response = new StringWebResponse() {
+            @Override
+            public OutputStream respond(String contentType, String characterEncoding) throws IOException {
+                return new FilterOutputStream(super.respond(contentType, characterEncoding)) {
+                    @Override
+                    public void write(byte[] bytes, int offset, int length) throws IOException {
+                        out.write(bytes, offset, length);
+                    }
+
+                    @Override
+                    public void flush() throws IOException {
+                        super.flush();
+                        if (bodyString().contains(latest)) {
+                            latestSent.countDown();
+                        }
+                    }
+                };
+            }
+        };
+        response.requestHeaders.put("Last-Event-ID", "unknown:7");
+        Thread streaming = new Thread(() -> {
+            try {
+                handler.handle("/status/stream", response);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        streaming.start();
+        try {
+            assertTrue("Should send every component", latestSent.await(5, TimeUnit.SECONDS));
+        } finally {
+            statusPage.closeChangeSubscriptions();
+            streaming.join(5000);
+        }
+
+        String body = response.bodyString();
+        assertTrue(body.indexOf("event: reset") < body.indexOf("event: component"));
+    }
+
+    @Test
+    public void status_page_is_compressed_when_the_client_accepts_gzip() throws Exception {
+        StringWebResponse response = new StringWebResponse();
+        response.requestHeaders.put("Accept-Encoding", "gzip, deflate");
+
+        handler.handle("/status", response);
+
+        assertEquals("gzip", response.headers.get("Content-Encoding"));
+        assertEquals("Accept-Encoding", response.headers.get("Vary"));
+        assertEquals(Integer.toString(response.body.size()), response.headers.get("Content-Length"));
+        assertTrue(response.headers.get("ETag").endsWith("-gzip\""));
+    }
+
+    @Test
+    public void jsonp_status_is_never_compressed() throws Exception {
+        StringWebResponse response = new StringWebResponse();
+        response.requestHeaders.put("Accept-Encoding", "gzip");
+
+        handler.handleJSONP("/status.json", "callback", response);
+
+        assertNull(response.headers.get("Content-Encoding"));
+        assertTrue(response.bodyString().startsWith("callback("));
+    }
+
+    @Test
+    public void metrics_are_served_in_prometheus_text_format() throws Exception {
+        StringWebResponse response = new StringWebResponse();
+
+        handler.handle("/metrics", response);
+
+        assertEquals("text/plain; version=0.0.4", response.contentType);
+        assertTrue(response.bodyString().contains("tucker_component_status{component=\"version\",status=\"info\"} 1.0\n"));
+        assertTrue(response.bodyString().contains("tucker_health{state=\"healthy\"} 1.0\n"));
+    }
+
+    @Test
+    public void metrics_are_served_as_openmetrics_when_accepted() throws Exception {
+        StringWebResponse response = new StringWebResponse();
+        response.requestHeaders.put("Accept", "application/openmetrics-text; version=1.0.0,text/plain;q=0.5");
+
+        handler.handle("/metrics", response);
+
+        assertEquals("application/openmetrics-text; version=1.0.0", response.contentType);
+        assertTrue(response.bodyString().endsWith("# EOF\n"));
+    }
+
+    @Test
+    public void requests_are_counted_per_route_and_reported_on_self() throws Exception {
+        handler.handle("/status", new StringWebResponse());
+        handler.handle("/status", new StringWebResponse());
+        handler.handleJSONP("/status.json", "cb", new StringWebResponse());
+        handler.handle("/nonsense", new StringWebResponse());
+
+        StringWebResponse response = new StringWebResponse();
+        handler.handle("/self", response);
+
+        JsonNode self = new ObjectMapper().readTree(response.bodyString());
+        assertEquals(2, self.at("/routes/~1status/requests").asInt());
+        assertTrue(self.at("/routes/~1status/bytes").asLong() > 0);
+        assertEquals(2, self.at("/routes/~1status/millis/count").asInt());
+        assertEquals(1, self.at("/routes/~1status.json/requests").asInt());
+        assertEquals(1, self.at("/notFound").asInt());
+    }
+
+    @Test
+    public void request_statistics_are_available_as_metrics() throws Exception {
+        handler.handle("/health", new StringWebResponse());
+        StringWebResponse rejected = new StringWebResponse();
+        rejected.requestParameters.put("since", "yesterday");
+        handler.handle("/status.json", rejected);
+
+        StringWebResponse response = new StringWebResponse();
+        handler.handle("/metrics", response);
+        MetricRegistry registry = new MetricRegistry();
+        registry.registerAll(handler.getStatistics());
+
+        assertTrue(response.bodyString().contains("tucker_http_requests_total{route=\"/health\"} 1.0\n"));
+        assertTrue(response.bodyString().contains("tucker_http_rejected_total{route=\"/status.json\"} 1.0\n"));
+        assertEquals(1L, registry.getGauges().get("tucker.http.health.requests").getValue());
+    }
+
+    @Test
+    public void status_history_is_served_for_a_component() throws Exception {
+        handler.handle("/status", new StringWebResponse());
+        StringWebResponse response = new StringWebResponse();
+        response.requestParameters.put("id", "version");
+
+        handler.handle("/status/history", response);
+
+        JsonNode history = new ObjectMapper().readTree(response.bodyString());
+        assertEquals("application/json", response.contentType);
+        assertEquals("info", history.get("status").asText());
+        assertEquals(1, history.get("transitions").size());
+        assertTrue(history.get("inCurrentStatusMillis").isNumber());
+    }
+
+    @Test
+    public void status_history_needs_a_known_component_id() throws Exception {
+        StringWebResponse missing = new StringWebResponse();
+        handler.handle("/status/history", missing);
+        StringWebResponse unknown = new StringWebResponse();
+        unknown.requestParameters.put("id", "nonsense");
+        handler.handle("/status/history", unknown);
+
+        assertEquals(400, missing.statusCode);
+        assertEquals(404, unknown.statusCode);
+    }
+
+    @Test
+    public void uptime_is_served_for_every_component_or_one() throws Exception {
+        handler.handle("/status", new StringWebResponse());
+        StringWebResponse all = new StringWebResponse();
+        handler.handle("/status/uptime", all);
+        StringWebResponse one = new StringWebResponse();
+        one.requestParameters.put("id", "version");
+        one.requestParameters.put("days", "7");
+        handler.handle("/status/uptime", one);
+
+        JsonNode allJson = new ObjectMapper().readTree(all.bodyString());
+        JsonNode oneJson = new ObjectMapper().readTree(one.bodyString());
+        assertEquals(2, allJson.get("components").size());
+        assertEquals(1, oneJson.get("components").size());
+        assertEquals(7 * 24 * 60 - 1, oneJson.at("/components/0/minutes/unknown").asInt());
+        assertEquals(100.0, oneJson.at("/components/0/uptimePercent").asDouble(), 0.0);
+    }
+
+    @Test
+    public void uptime_rejects_unknown_components_and_bad_windows() throws Exception {
+        StringWebResponse unknown = new StringWebResponse();
+        unknown.requestParameters.put("id", "nonsense");
+        handler.handle("/status/uptime", unknown);
+        StringWebResponse tooLong = new StringWebResponse();
+        tooLong.requestParameters.put("days", "365");
+        handler.handle("/status/uptime", tooLong);
+
+        assertEquals(404, unknown.statusCode);
+        assertEquals(400, tooLong.statusCode);
+    }
+
+    @Test
+    public void refresh_updates_an_async_component_and_then_limits_the_rate() throws Exception {
+        AtomicInteger checks = new AtomicInteger();
+        StatusPageGenerator statusPage = new StatusPageGenerator("appId", version);
+        statusPage.addComponent(AsyncComponent.wrapping(Component.supplyReport("async", "Async", () -> new Report(Status.OK, checks.incrementAndGet()))));
+        ApplicationInformationHandler refreshingHandler = new ApplicationInformationHandler(statusPage, stoppable, health);
+
+        StringWebResponse first = refreshRequest("async");
+        refreshingHandler.handle("/status/refresh", first);
+        StringWebResponse second = refreshRequest("async");
+        refreshingHandler.handle("/status/refresh", second);
+
+        JsonNode report = new ObjectMapper().readTree(first.bodyString());
+        assertEquals("async", report.get("id").asText());
+        assertEquals("1", report.get("value").asText());
+        assertEquals(429, second.statusCode);
+        assertEquals("10", second.headers.get("Retry-After"));
+        assertEquals(1, checks.get());
+    }
+
+    @Test
+    public void refresh_answers_accepted_rather_than_waiting_for_a_slow_check() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        StatusPageGenerator statusPage = new StatusPageGenerator("appId", version);
+        statusPage.addComponent(AsyncComponent.wrapping(Component.supplyReport("slow", "Slow", () -> {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new Report(Status.OK, "done");
+        })));
+        ApplicationInformationHandler refreshingHandler = new ApplicationInformationHandler(statusPage, stoppable, health);
+
+        StringWebResponse response = refreshRequest("slow");
+        try {
+            refreshingHandler.handle("/status/refresh", response);
+        } finally {
+            release.countDown();
+        }
+
+        assertEquals(202, response.statusCode);
+    }
+
+    @Test
+    public void refresh_must_be_posted_for_a_known_async_component_while_other_routes_answer_any_method() throws Exception {
+        StringWebResponse got = new StringWebResponse();
+        got.requestParameters.put("id", "version");
+        handler.handle("/status/refresh", got);
+        StringWebResponse missing = refreshRequest(null);
+        handler.handle("/status/refresh", missing);
+        StringWebResponse synchronous = refreshRequest("version");
+        handler.handle("/status/refresh", synchronous);
+        StringWebResponse postedStatus = refreshRequest(null);
+        handler.handle("/status", postedStatus);
+
+        assertEquals(405, got.statusCode);
+        assertEquals("POST", got.headers.get("Allow"));
+        assertEquals(400, missing.statusCode);
+        assertEquals(404, synchronous.statusCode);
+        assertEquals(0, postedStatus.statusCode);
+        assertTrue(postedStatus.bodyString().contains("<application"));
+    }
+
+    private static StringWebResponse refreshRequest(String id) {
+        StringWebResponse response = new StringWebResponse();
+        response.requestMethod = "POST";
+        if (id != null) {
+            response.requestParameters.put("id", id);
+        }
+        return response;
+    }
 }
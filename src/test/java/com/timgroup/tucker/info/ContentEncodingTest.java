@@ -0,0 +1,51 @@
+package com.timgroup.tucker.info;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import static org.junit.Assert.assertEquals;
+
+public class ContentEncodingTest {
+
+    @Test
+    public void negotiatesIdentityWhenNothingIsAccepted() throws Exception {
+        assertEquals(ContentEncoding.identity, ContentEncoding.negotiate(null));
+        assertEquals(ContentEncoding.identity, ContentEncoding.negotiate(""));
+        assertEquals(ContentEncoding.identity, ContentEncoding.negotiate("br"));
+        assertEquals(ContentEncoding.identity, ContentEncoding.negotiate("gzip;q=0, deflate;q=0"));
+    }
+
+    @Test
+    public void prefersGzipOverDeflateUnlessWeightedOtherwise() throws Exception {
+        assertEquals(ContentEncoding.gzip, ContentEncoding.negotiate("deflate, gzip"));
+        assertEquals(ContentEncoding.gzip, ContentEncoding.negotiate("*"));
+        assertEquals(ContentEncoding.deflate, ContentEncoding.negotiate("gzip;q=0.5, deflate"));
+        assertEquals(ContentEncoding.deflate, ContentEncoding.negotiate("gzip;q=0, *"));
+    }
+
+    @Test
+    public void encodedBytesDecodeToTheOriginal() throws Exception {
+        byte[] original = "<application id=\"app\"/>".getBytes(StandardCharsets.UTF_8);
+
+        assertEquals(new String(original, StandardCharsets.UTF_8), decode(new GZIPInputStream(new ByteArrayInputStream(ContentEncoding.gzip.encode(original)))));
+        assertEquals(new String(original, StandardCharsets.UTF_8), decode(new InflaterInputStream(new ByteArrayInputStream(ContentEncoding.deflate.encode(original)))));
+        assertEquals(original, ContentEncoding.identity.encode(original));
+    }
+
+    private static String decode(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -6,17 +6,20 @@ import io.prometheus.client.Collector;
 import io.prometheus.client.CollectorRegistry;
 import org.junit.Test;
 
+import java.time.Duration;
 import java.util.Enumeration;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Spliterator;
 import java.util.Spliterators;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasEntry;
 import static org.hamcrest.Matchers.hasItems;
 
@@ -54,6 +57,30 @@ public class StatusPageGeneratorComponentMetricsTest {
 
     }
 
+    @Test public void evaluates_each_component_once_per_scrape() {
+        AtomicInteger evaluations = new AtomicInteger();
+        StatusPageGenerator statusPage = new StatusPageGenerator("myapp", version);
+        statusPage.addComponent(Component.supplyReport("CountedComponent", "CountedComponent", () -> {
+            evaluations.incrementAndGet();
+            return new Report(Status.WARNING, "slow");
+        }));
+
+        enumerationAsStream(CollectorRegistry.defaultRegistry.metricFamilySamples()).collect(Collectors.toList());
+
+        assertThat(evaluations.get(), equalTo(1));
+    }
+
+    @Test public void reads_reused_snapshots_rather_than_evaluating_again() {
+        AtomicInteger evaluations = new AtomicInteger();
+        StatusPageGenerator statusPage = new StatusPageGenerator("myapp", version).withCoalescedEvaluation(Duration.ofMinutes(1));
+        statusPage.addComponent(Component.supplyReport("CachedComponent", "CachedComponent", () -> new Report(Status.OK, evaluations.incrementAndGet())));
+        statusPage.getApplicationReport();
+
+        enumerationAsStream(CollectorRegistry.defaultRegistry.metricFamilySamples()).collect(Collectors.toList());
+
+        assertThat(evaluations.get(), equalTo(1));
+    }
+
     private static <T> Stream<T> enumerationAsStream(Enumeration<T> e) {
         return StreamSupport.stream(
                 Spliterators.spliteratorUnknownSize(
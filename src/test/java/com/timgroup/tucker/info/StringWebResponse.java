@@ -9,14 +9,32 @@ import java.util.HashMap;
 import java.util.Map;
 
 class StringWebResponse implements WebResponse {
+    public final Map<String, String> requestHeaders = new HashMap<>();
+    public final Map<String, String> requestParameters = new HashMap<>();
     public final Map<String, String> headers = new HashMap<>();
     public final ByteArrayOutputStream body = new ByteArrayOutputStream();
 
+    public String requestMethod = "GET";
     public String contentType;
     public String characterEncoding;
     public int statusCode;
     public String relativePathRedirect;
 
+    @Override
+    public String getRequestMethod() {
+        return requestMethod;
+    }
+
+    @Override
+    public String getRequestHeader(String name) {
+        return requestHeaders.get(name);
+    }
+
+    @Override
+    public String getRequestParameter(String name) {
+        return requestParameters.get(name);
+    }
+
     @Override
     public void setHeader(String name, String value) throws IOException {
         headers.put(name, value);
@@ -3,19 +3,33 @@ package com.timgroup.tucker.info.async;
 import com.timgroup.tucker.info.Component;
 import com.timgroup.tucker.info.Report;
 import com.timgroup.tucker.info.Status;
+import com.timgroup.tucker.info.component.VersionComponent;
+import com.timgroup.tucker.info.status.StatusPageGenerator;
 import org.junit.After;
 import org.junit.Test;
 
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
 
 import static com.timgroup.tucker.info.Status.OK;
 import static com.timgroup.tucker.info.Status.WARNING;
 import static com.timgroup.tucker.info.async.ManualClock.initiallyAt;
 import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
 import static java.util.Collections.singletonList;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.MINUTES;
@@ -66,6 +80,321 @@ public class AsyncComponentSchedulerTest {
         assertTrue("Should schedule repeated updates", scheduledNotification.await(1, SECONDS));
     }
 
+    @Test
+    public void sharedPoolUpdatesManyComponentsOnFewThreadsWithoutOverlappingUpdates() throws InterruptedException {
+        CountDownLatch updates = new CountDownLatch(1000);
+        Set<String> threadNames = ConcurrentHashMap.newKeySet();
+        AtomicBoolean overlapped = new AtomicBoolean();
+        List<AsyncComponent> components = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            AtomicBoolean running = new AtomicBoolean();
+            components.add(AsyncComponent.wrapping(Component.supplyReport("component-" + i, "Component " + i, () -> {
+                if (!running.compareAndSet(false, true)) {
+                    overlapped.set(true);
+                }
+                threadNames.add(Thread.currentThread().getName());
+                updates.countDown();
+                running.set(false);
+                return new Report(OK, "fine");
+            }), AsyncSettings.settings().withRepeatSchedule(1, MILLISECONDS)));
+        }
+
+        scheduler = AsyncComponentScheduler.createFromAsync(components).withSharedPool(4);
+        scheduler.start();
+
+        assertTrue("Should keep updating components", updates.await(5, SECONDS));
+        assertFalse(overlapped.get());
+        assertTrue(threadNames.size() <= 4);
+    }
+
+    @Test
+    public void virtualThreadModeUpdatesComponentsWhateverTheJavaVersion() throws InterruptedException {
+        CountDownLatch scheduledNotification = new CountDownLatch(6);
+        AsyncComponent first = quicklyScheduledComponent("first", scheduledNotification);
+        AsyncComponent second = quicklyScheduledComponent("second", scheduledNotification);
+
+        scheduler = AsyncComponentScheduler.createFromAsync(asList(first, second)).withVirtualThreads();
+        scheduler.start();
+
+        assertTrue("Should schedule repeated updates", scheduledNotification.await(1, SECONDS));
+        assertTrue(scheduler.getPinnings().isEmpty());
+    }
+
+    @Test
+    public void staggeredComponentsStartSpreadOverTheirInterval() throws InterruptedException {
+        long started = System.nanoTime();
+        long[] firstUpdated = new long[4];
+        CountDownLatch allUpdated = new CountDownLatch(4);
+        List<AsyncComponent> components = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            int index = i;
+            components.add(AsyncComponent.wrapping(Component.supplyReport("component-" + i, "Component " + i, () -> {
+                if (firstUpdated[index] == 0) {
+                    firstUpdated[index] = System.nanoTime();
+                    allUpdated.countDown();
+                }
+                return new Report(OK, "fine");
+            }), AsyncSettings.settings().withRepeatSchedule(400, MILLISECONDS).withStaggeredStart()));
+        }
+
+        scheduler = AsyncComponentScheduler.createFromAsync(components);
+        scheduler.start();
+
+        assertTrue("Should update every component", allUpdated.await(1, SECONDS));
+        for (int i = 1; i < 4; i++) {
+            assertTrue("component " + i + " should start after component " + (i - 1), firstUpdated[i] > firstUpdated[i - 1]);
+        }
+        assertTrue(firstUpdated[3] - started >= MILLISECONDS.toNanos(300));
+    }
+
+    @Test
+    public void hungComponentDoesNotHoldUpOthersOnASharedPool() throws InterruptedException {
+        TestingSemaphore hungInvoked = new TestingSemaphore();
+        CountDownLatch healthyUpdates = new CountDownLatch(5);
+        AsyncComponent hung = AsyncComponent.wrapping(neverReturnsComponent(hungInvoked),
+                AsyncSettings.settings().withRepeatSchedule(1, MILLISECONDS).withUpdateTimeout(Duration.ofMillis(50)));
+        AsyncComponent healthy = quicklyScheduledComponent("healthy", healthyUpdates);
+
+        scheduler = AsyncComponentScheduler.createFromAsync(asList(hung, healthy)).withSharedPool(1);
+        scheduler.start();
+
+        hungInvoked.waitFor("Component to be invoked");
+        assertTrue("Should keep updating the healthy component", healthyUpdates.await(1, SECONDS));
+        assertTrue(hung.getHungUpdates() >= 1);
+    }
+
+    @Test
+    public void componentsStartAfterTheComponentsTheyDependOn() throws InterruptedException {
+        List<String> started = new CopyOnWriteArrayList<>();
+        CountDownLatch allStarted = new CountDownLatch(3);
+        AsyncComponent database = recordingComponent("db", started, allStarted);
+        AsyncComponent repository = recordingComponent("repository", started, allStarted).dependingOn(database);
+        AsyncComponent cache = recordingComponent("cache", started, allStarted);
+
+        scheduler = AsyncComponentScheduler.createFromAsync(asList(repository, cache, database)).withSharedPool(1);
+        scheduler.start();
+
+        assertTrue("Should start every component", allStarted.await(1, SECONDS));
+        assertEquals(asList("cache", "db", "repository"), started.subList(0, 3));
+    }
+
+    @Test
+    public void dependentsOnTheirOwnThreadsWaitForTheFirstUpdateOfTheirUpstream() throws InterruptedException {
+        List<String> updated = new CopyOnWriteArrayList<>();
+        CountDownLatch upstreamStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch dependentUpdated = new CountDownLatch(1);
+        AsyncComponent database = AsyncComponent.wrapping(Component.supplyReport("db", "db", () -> {
+            upstreamStarted.countDown();
+            try {
+                release.await(5, SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            updated.add("db");
+            return new Report(OK, "fine");
+        }), AsyncSettings.settings().withRepeatSchedule(1, MINUTES));
+        AsyncComponent repository = AsyncComponent.wrapping(Component.supplyReport("repository", "repository", () -> {
+            updated.add("repository");
+            dependentUpdated.countDown();
+            return new Report(OK, "fine");
+        }), AsyncSettings.settings().withRepeatSchedule(1, MINUTES)).dependingOn(database);
+
+        scheduler = AsyncComponentScheduler.createFromAsync(asList(repository, database));
+        scheduler.start();
+
+        assertTrue("Should start the upstream component", upstreamStarted.await(1, SECONDS));
+        assertEquals(emptyList(), updated);
+        release.countDown();
+        assertTrue("Should update the dependent component", dependentUpdated.await(1, SECONDS));
+        assertEquals(asList("db", "repository"), updated);
+    }
+
+    @Test
+    public void dependentsAreUpdatedAgainAsSoonAsTheirUpstreamStartsOrStopsBlockingThem() throws InterruptedException {
+        AtomicReference<Status> databaseStatus = new AtomicReference<>(OK);
+        AsyncComponent database = AsyncComponent.wrapping(Component.supplyReport("db", "db", () -> new Report(databaseStatus.get(), "db")),
+                AsyncSettings.settings().withRepeatSchedule(1, MINUTES));
+        Semaphore checks = new Semaphore(0);
+        AsyncComponent repository = AsyncComponent.wrapping(Component.supplyReport("repository", "repository", () -> {
+            checks.release();
+            return new Report(OK, "fine");
+        }), AsyncSettings.settings().withRepeatSchedule(1, MINUTES)).dependingOn(database);
+
+        scheduler = AsyncComponentScheduler.createFromAsync(asList(database, repository));
+        scheduler.start();
+        assertTrue("Should check the dependent component", checks.tryAcquire(1, SECONDS));
+
+        databaseStatus.set(Status.CRITICAL);
+        database.update();
+        waitUntil("dependent is reported blocked", () -> repository.getReport().getValue().equals("blocked by db"));
+
+        databaseStatus.set(OK);
+        database.update();
+        assertTrue("Should check the dependent component again", checks.tryAcquire(1, SECONDS));
+        waitUntil("dependent is no longer blocked", () -> repository.getReport().getValue().equals("fine"));
+        assertEquals(0, checks.availablePermits());
+    }
+
+    @Test
+    public void dependentsStartAfterTheirRepeatIntervalIfTheirUpstreamNeverReports() throws InterruptedException {
+        AsyncComponent neverUpdated = AsyncComponent.wrapping(Component.of("db", "db", new Report(OK, "fine")));
+        CountDownLatch updates = new CountDownLatch(1);
+        AsyncComponent repository = quicklyScheduledComponent("repository", updates).dependingOn(neverUpdated);
+
+        scheduler = AsyncComponentScheduler.createFromAsync(singletonList(repository));
+        scheduler.start();
+
+        assertTrue("Should update the dependent component", updates.await(1, SECONDS));
+    }
+
+    private static void waitUntil(String description, BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + SECONDS.toNanos(1);
+        while (!condition.getAsBoolean()) {
+            assertTrue("Should find " + description, System.nanoTime() < deadline);
+            Thread.sleep(1);
+        }
+    }
+
+    private AsyncComponent recordingComponent(String id, List<String> started, CountDownLatch allStarted) {
+        return AsyncComponent.wrapping(Component.supplyReport(id, id, () -> {
+            started.add(id);
+            allStarted.countDown();
+            return new Report(OK, "fine");
+        }), AsyncSettings.settings().withRepeatSchedule(1, MINUTES));
+    }
+
+    @Test
+    public void componentsCanBeAddedAndRemovedWhileRunning() throws InterruptedException {
+        CountDownLatch firstUpdates = new CountDownLatch(3);
+        AtomicInteger secondUpdates = new AtomicInteger();
+        AsyncComponent first = quicklyScheduledComponent("first", firstUpdates);
+        AsyncComponent second = AsyncComponent.wrapping(
+                Component.supplyReport("second", "Second", () -> new Report(OK, secondUpdates.incrementAndGet())),
+                AsyncSettings.settings().withRepeatSchedule(1, MILLISECONDS));
+
+        scheduler = AsyncComponentScheduler.createFromAsync(singletonList(second)).withSharedPool(2);
+        scheduler.start();
+        scheduler.addComponent(first);
+
+        assertTrue("Should update the added component", firstUpdates.await(1, SECONDS));
+        assertTrue(scheduler.removeComponent("second"));
+        assertFalse(scheduler.removeComponent("second"));
+        Thread.sleep(50);
+        int updatesAfterRemoval = secondUpdates.get();
+        Thread.sleep(100);
+        assertEquals(updatesAfterRemoval, secondUpdates.get());
+        assertEquals(singletonList(first), scheduler.getComponents());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTwoComponentsWithTheSameId() {
+        AsyncComponent first = quicklyScheduledComponent("same", new CountDownLatch(1));
+        AsyncComponent second = quicklyScheduledComponent("same", new CountDownLatch(1));
+
+        AsyncComponentScheduler.createFromAsync(asList(first, second));
+    }
+
+    @Test
+    public void removingAComponentFromItsStatusPageCancelsItsRefresh() throws InterruptedException {
+        AtomicInteger updates = new AtomicInteger();
+        AsyncComponent asyncComponent = AsyncComponent.wrapping(
+                Component.supplyReport("refreshed", "Refreshed", () -> new Report(OK, updates.incrementAndGet())),
+                AsyncSettings.settings().withRepeatSchedule(1, MILLISECONDS));
+        StatusPageGenerator statusPage = new StatusPageGenerator("myapp", new VersionComponent() {
+            @Override public Report getReport() {
+                return new Report(Status.INFO, "0.0.1");
+            }
+        });
+        scheduler = schedule(asyncComponent);
+        scheduler.addComponentsTo(statusPage);
+
+        assertTrue(statusPage.removeComponent("refreshed"));
+        Thread.sleep(50);
+        int updatesAfterRemoval = updates.get();
+        Thread.sleep(100);
+        assertEquals(updatesAfterRemoval, updates.get());
+        assertTrue(scheduler.getComponents().isEmpty());
+    }
+
+    @Test
+    public void refreshNowRunsAnotherUpdateStraightAfterTheRunningOneAndSharesIt() throws Exception {
+        CountDownLatch firstCheckStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger checks = new AtomicInteger();
+        AsyncComponent asyncComponent = AsyncComponent.wrapping(
+                Component.supplyReport("slow", "Slow", () -> {
+                    int check = checks.incrementAndGet();
+                    firstCheckStarted.countDown();
+                    try {
+                        release.await(5, SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return new Report(OK, check);
+                }),
+                AsyncSettings.settings().withRepeatSchedule(1, MINUTES));
+        scheduler = schedule(asyncComponent);
+        assertTrue(firstCheckStarted.await(5, SECONDS));
+
+        CompletableFuture<Report> refresh = asyncComponent.refreshNow();
+        assertThat(asyncComponent.refreshNow(), is(refresh));
+        release.countDown();
+
+        assertEquals(new Report(OK, 2), refresh.get(5, SECONDS));
+        assertEquals(new Report(OK, 2), asyncComponent.getReport());
+        assertEquals(2, checks.get());
+    }
+
+    @Test
+    public void refreshNowIsRefusedWithinTheRefreshLimit() throws Exception {
+        ManualClock clock = initiallyAt(Instant.parse("2014-07-12T01:00:00Z"));
+        AsyncComponent asyncComponent = AsyncComponent.wrapping(
+                healthyWellBehavedComponent,
+                AsyncSettings.settings().withClock(clock).withRefreshLimit(Duration.ofMinutes(1)));
+
+        assertEquals(new Report(OK, "It's all good."), asyncComponent.refreshNow().get(5, SECONDS));
+        try {
+            asyncComponent.refreshNow().get(5, SECONDS);
+            throw new AssertionError("expected refresh to be refused");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), instanceOf(RejectedExecutionException.class));
+        }
+
+        clock.bump(Duration.ofMinutes(1));
+        assertEquals(new Report(OK, "It's all good."), asyncComponent.refreshNow().get(5, SECONDS));
+    }
+
+    @Test
+    public void refreshesWithoutASchedulerNeverOverlap() throws Exception {
+        CountDownLatch firstCheckStarted = new CountDownLatch(1);
+        CountDownLatch secondCheckStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger checks = new AtomicInteger();
+        AsyncComponent asyncComponent = AsyncComponent.wrapping(
+                Component.supplyReport("slow", "Slow", () -> {
+                    int check = checks.incrementAndGet();
+                    (check == 1 ? firstCheckStarted : secondCheckStarted).countDown();
+                    try {
+                        release.await(5, SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return new Report(OK, check);
+                }),
+                AsyncSettings.settings().withRefreshLimit(Duration.ZERO));
+
+        CompletableFuture<Report> first = asyncComponent.refreshNow();
+        assertTrue(firstCheckStarted.await(5, SECONDS));
+        CompletableFuture<Report> second = asyncComponent.refreshNow();
+        boolean overlapped = secondCheckStarted.await(100, MILLISECONDS);
+        release.countDown();
+
+        assertFalse("Should not start a second check while the first is running", overlapped);
+        assertEquals(new Report(OK, 1), first.get(5, SECONDS));
+        assertEquals(new Report(OK, 2), second.get(5, SECONDS));
+    }
+
     private AsyncComponent quicklyScheduledComponent(String id, CountDownLatch scheduledNotification) {
         return AsyncComponent.wrapping(
                 new SchedulingTestComponent(id, scheduledNotification),
@@ -141,6 +470,14 @@ public class AsyncComponentSchedulerTest {
         scheduler.stop();
     }
 
+    @Test(expected = IllegalStateException.class)
+    public void refusesComponentsAddedAfterBeingStopped() throws InterruptedException {
+        scheduler = schedule(quicklyScheduledComponent("first", new CountDownLatch(1)));
+
+        scheduler.stop();
+        scheduler.addComponent(quicklyScheduledComponent("second", new CountDownLatch(1)));
+    }
+
     private Component neverReturnsComponent(final TestingSemaphore invoked) {
         return Component.supplyReport("my-never-returning-component-id", "My Never Returning Component", () -> {
             try {
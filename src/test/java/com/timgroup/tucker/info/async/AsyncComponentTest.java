@@ -7,14 +7,31 @@ import org.junit.Test;
 
 import java.net.URI;
 import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static com.timgroup.tucker.info.Status.INFO;
 import static com.timgroup.tucker.info.Status.OK;
 import static com.timgroup.tucker.info.Status.WARNING;
+import static java.util.Arrays.asList;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.startsWith;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
@@ -31,6 +48,166 @@ public class AsyncComponentTest {
         assertEquals("My Test Component Label", asyncComponent.getLabel());
     }
     
+    @Test
+    public void nextUpdateIsDelayedByTheRepeatIntervalMovedByUpToTheJitter() {
+        AsyncComponent steady = AsyncComponent.wrapping(healthyWellBehavedComponent,
+                AsyncSettings.settings().withRepeatSchedule(Duration.ofSeconds(30)));
+        AsyncComponent jittery = AsyncComponent.wrapping(healthyWellBehavedComponent,
+                AsyncSettings.settings().withRepeatSchedule(Duration.ofSeconds(30)).withJitter(Duration.ofSeconds(5)));
+
+        assertEquals(Duration.ofSeconds(30).toNanos(), steady.nextUpdateDelayNanos());
+        Set<Long> delays = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            long delay = jittery.nextUpdateDelayNanos();
+            assertTrue(delay >= Duration.ofSeconds(25).toNanos() && delay <= Duration.ofSeconds(35).toNanos());
+            delays.add(delay);
+        }
+        assertTrue(delays.size() > 1);
+    }
+
+    @Test
+    public void adaptiveScheduleBacksOffWhileTheReportIsUnchanged() {
+        AsyncComponent asyncComponent = AsyncComponent.wrapping(healthyWellBehavedComponent,
+                AsyncSettings.settings().withRepeatSchedule(Duration.ofSeconds(30)).withAdaptiveRepeatSchedule(Duration.ofSeconds(5), Duration.ofMinutes(4)));
+
+        List<Duration> intervals = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            asyncComponent.update();
+            intervals.add(asyncComponent.getCurrentInterval());
+        }
+
+        assertEquals(asList(Duration.ofSeconds(30), Duration.ofMinutes(1), Duration.ofMinutes(2), Duration.ofMinutes(4), Duration.ofMinutes(4)), intervals);
+    }
+
+    @Test
+    public void adaptiveScheduleSnapsToTheFastestIntervalOnFailureOrStatusChange() {
+        Iterator<Report> reports = asList(new Report(OK, "up"), new Report(OK, "up"), new Report(Status.CRITICAL, "down"),
+                new Report(Status.CRITICAL, "down"), new Report(OK, "up"), new Report(OK, "up")).iterator();
+        AsyncComponent asyncComponent = AsyncComponent.wrapping(Component.supplyReport("flapping", "Flapping", reports::next),
+                AsyncSettings.settings().withRepeatSchedule(Duration.ofSeconds(30)).withAdaptiveRepeatSchedule(Duration.ofSeconds(5), Duration.ofMinutes(4)));
+
+        List<Duration> intervals = new ArrayList<>();
+        while (reports.hasNext()) {
+            asyncComponent.update();
+            intervals.add(asyncComponent.getCurrentInterval());
+        }
+
+        assertEquals(asList(Duration.ofSeconds(30), Duration.ofMinutes(1), Duration.ofSeconds(5), Duration.ofSeconds(5), Duration.ofSeconds(5), Duration.ofSeconds(10)), intervals);
+    }
+
+    @Test
+    public void stalenessLimitGrowsWithTheAdaptiveInterval() {
+        ManualClock clock = ManualClock.initiallyAt(Instant.parse("2014-07-12T01:00:00Z"));
+        AsyncComponent asyncComponent = AsyncComponent.wrapping(healthyWellBehavedComponent,
+                AsyncSettings.settings().withClock(clock).withRepeatSchedule(Duration.ofSeconds(30)).withStalenessLimit(Duration.ofMinutes(5))
+                        .withAdaptiveRepeatSchedule(Duration.ofSeconds(5), Duration.ofMinutes(4)));
+        for (int i = 0; i < 4; i++) {
+            asyncComponent.update();
+        }
+
+        clock.bump(Duration.ofMinutes(30));
+        assertFalse(asyncComponent.isStale());
+        clock.bump(Duration.ofMinutes(11));
+        assertTrue(asyncComponent.isStale());
+    }
+
+    @Test
+    public void updateThatTimesOutIsInterruptedReportedWithItsStackAndCounted() throws InterruptedException {
+        CountDownLatch interrupted = new CountDownLatch(1);
+        AsyncComponent asyncComponent = AsyncComponent.wrapping(Component.supplyReport("hung", "Hung", () -> {
+            try {
+                new CountDownLatch(1).await();
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return new Report(OK, "finally");
+        }), AsyncSettings.settings().withUpdateTimeout(Duration.ofMillis(100)));
+
+        asyncComponent.update();
+
+        Report report = asyncComponent.getReport();
+        assertEquals(WARNING, report.getStatus());
+        assertThat(report.getException(), instanceOf(TimeoutException.class));
+        assertEquals("Timed out after PT0.1S", report.getException().getMessage());
+        assertTrue(Arrays.stream(report.getException().getStackTrace()).anyMatch(frame -> frame.getClassName().equals(CountDownLatch.class.getName())));
+        assertEquals(1, asyncComponent.getHungUpdates());
+        assertTrue(interrupted.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void noNewCheckStartsWhileATimedOutOneIsStillRunning() {
+        AtomicInteger checks = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        AsyncComponent asyncComponent = AsyncComponent.wrapping(Component.supplyReport("stubborn", "Stubborn", () -> {
+            checks.incrementAndGet();
+            while (release.getCount() > 0) {
+                try {
+                    release.await();
+                } catch (InterruptedException ignored) {
+                }
+            }
+            return new Report(OK, "finally");
+        }), AsyncSettings.settings().withUpdateTimeout(Duration.ofMillis(50)));
+
+        try {
+            asyncComponent.update();
+            asyncComponent.update();
+
+            assertEquals(1, checks.get());
+            assertEquals(1, asyncComponent.getHungUpdates());
+            assertThat(asyncComponent.getReport().getException().getMessage(), startsWith("Previous update still running"));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void dependentIsReportedBlockedWithoutBeingCheckedWhileUpstreamIsCritical() {
+        AtomicReference<Report> databaseReport = new AtomicReference<>(new Report(Status.CRITICAL, "down"));
+        AtomicInteger checks = new AtomicInteger();
+        AsyncComponent database = AsyncComponent.wrapping(Component.supplyReport("db", "Database", databaseReport::get));
+        AsyncComponent repository = AsyncComponent.wrapping(Component.supplyReport("repository", "Repository", () -> {
+            checks.incrementAndGet();
+            return new Report(OK, "fine");
+        })).dependingOn(database);
+
+        database.update();
+        repository.update();
+
+        assertEquals(new Report(WARNING, "blocked by db"), repository.getReport());
+        assertEquals(Optional.of("db"), repository.getBlockedBy());
+        assertEquals(0, checks.get());
+
+        databaseReport.set(new Report(OK, "up"));
+        database.update();
+        repository.update();
+
+        assertEquals(new Report(OK, "fine"), repository.getReport());
+        assertEquals(Optional.empty(), repository.getBlockedBy());
+        assertEquals(1, checks.get());
+    }
+
+    @Test
+    public void blockingPropagatesTheRootCause() {
+        AsyncComponent database = AsyncComponent.wrapping(Component.of("db", "Database", new Report(Status.CRITICAL, "down")));
+        AsyncComponent repository = AsyncComponent.wrapping(healthyWellBehavedComponent).dependingOn(database);
+        AsyncComponent service = AsyncComponent.wrapping(Component.of("service", "Service", new Report(OK, "fine"))).dependingOn(repository);
+
+        database.update();
+        repository.update();
+        service.update();
+
+        assertEquals(new Report(WARNING, "blocked by db"), service.getReport());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void dependenciesCannotFormACycle() {
+        AsyncComponent database = AsyncComponent.wrapping(Component.of("db", "Database", new Report(OK)));
+        AsyncComponent repository = AsyncComponent.wrapping(healthyWellBehavedComponent).dependingOn(database);
+
+        database.dependingOn(repository);
+    }
+
     @Test
     public void returnsPendingReportForWrappedComponentThatHasNotReturnedYet() {
         AsyncComponent asyncComponent = AsyncComponent.wrapping(healthyWellBehavedComponent);
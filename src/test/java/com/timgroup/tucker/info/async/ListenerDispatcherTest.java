@@ -0,0 +1,134 @@
+package com.timgroup.tucker.info.async;
+
+import com.timgroup.tucker.info.Component;
+import com.timgroup.tucker.info.Report;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.timgroup.tucker.info.Status.OK;
+import static java.util.Arrays.asList;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ListenerDispatcherTest {
+    private ListenerDispatcher dispatcher;
+
+    @After
+    public void closeDispatcher() {
+        if (dispatcher != null) {
+            dispatcher.close();
+        }
+    }
+
+    @Test
+    public void listenersAreToldOfTheLatestReportOnTheDispatcherThread() throws InterruptedException {
+        dispatcher = ListenerDispatcher.create();
+        AtomicInteger value = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch delivered = new CountDownLatch(2);
+        List<Object> values = new CopyOnWriteArrayList<>();
+        List<String> threadNames = new CopyOnWriteArrayList<>();
+        AsyncComponent asyncComponent = countingComponent("counting", value, AsyncSettings.settings().withListenerDispatcher(dispatcher))
+                .withListener((component, report) -> {
+                    values.add(report.getValue());
+                    threadNames.add(Thread.currentThread().getName());
+                    awaitQuietly(release);
+                    delivered.countDown();
+                });
+
+        asyncComponent.update();
+        while (values.isEmpty()) {
+            Thread.sleep(1);
+        }
+        asyncComponent.update();
+        asyncComponent.update();
+        release.countDown();
+
+        assertTrue("Should deliver updates", delivered.await(5, SECONDS));
+        assertEquals(asList(1, 3), values);
+        assertTrue(threadNames.stream().allMatch(name -> name.startsWith("Tucker-listeners-")));
+        assertEquals(0L, dispatcher.getDroppedUpdates());
+    }
+
+    @Test
+    public void updatesAreDroppedAndCountedWhenTheQueueIsFull() throws InterruptedException {
+        dispatcher = ListenerDispatcher.create(1);
+        AsyncSettings settings = AsyncSettings.settings().withListenerDispatcher(dispatcher);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch blocking = new CountDownLatch(1);
+        List<String> delivered = new CopyOnWriteArrayList<>();
+        AsyncComponentListener listener = (component, report) -> {
+            blocking.countDown();
+            awaitQuietly(release);
+            delivered.add(component.getId());
+        };
+        AsyncComponent first = countingComponent("first", new AtomicInteger(), settings).withListener(listener);
+        AsyncComponent second = countingComponent("second", new AtomicInteger(), settings).withListener(listener);
+        AsyncComponent third = countingComponent("third", new AtomicInteger(), settings).withListener(listener);
+
+        first.update();
+        assertTrue(blocking.await(5, SECONDS));
+        second.update();
+        third.update();
+        release.countDown();
+        while (delivered.size() < 2) {
+            Thread.sleep(1);
+        }
+        third.update();
+
+        assertEquals(1L, dispatcher.getDroppedUpdates());
+        while (delivered.size() < 3) {
+            Thread.sleep(1);
+        }
+        assertEquals(asList("first", "second", "third"), delivered);
+    }
+
+    @Test
+    public void onlyChangedReportsAreDeliveredWhenRequested() {
+        AtomicInteger value = new AtomicInteger(1);
+        List<Report> delivered = new CopyOnWriteArrayList<>();
+        AsyncComponent asyncComponent = AsyncComponent.wrapping(
+                Component.supplyReport("steady", "Steady", () -> new Report(OK, value.get())),
+                AsyncSettings.settings().withChangedReportsOnly().withUpdateHook(delivered::add));
+
+        asyncComponent.update();
+        asyncComponent.update();
+        value.set(2);
+        asyncComponent.update();
+
+        assertEquals(asList(new Report(OK, 1), new Report(OK, 2)), delivered);
+    }
+
+    @Test
+    public void mappedCopiesDeliverThroughTheOriginalsChangedReportsOnlyFilter() {
+        List<Report> delivered = new CopyOnWriteArrayList<>();
+        AsyncComponent original = AsyncComponent.wrapping(
+                Component.supplyReport("steady", "Steady", () -> new Report(OK, 1)),
+                AsyncSettings.settings().withChangedReportsOnly().withUpdateHook(delivered::add));
+        AsyncComponent copy = (AsyncComponent) original.mapReport(report -> report);
+
+        original.update();
+        copy.update();
+        copy.update();
+
+        assertEquals(asList(new Report(OK, 1)), delivered);
+    }
+
+    private static AsyncComponent countingComponent(String id, AtomicInteger value, AsyncSettings settings) {
+        return AsyncComponent.wrapping(Component.supplyReport(id, id, () -> new Report(OK, value.incrementAndGet())), settings);
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
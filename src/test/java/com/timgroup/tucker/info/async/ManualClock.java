@@ -6,10 +6,10 @@ import java.time.Instant;
 import java.time.ZoneId;
 import java.time.ZoneOffset;
 
-final class ManualClock extends Clock {
+public final class ManualClock extends Clock {
     private Instant instant;
 
-    static ManualClock initiallyAt(Instant instant) {
+    public static ManualClock initiallyAt(Instant instant) {
         return new ManualClock(instant);
     }
 
@@ -17,7 +17,7 @@ final class ManualClock extends Clock {
         this.instant = instant;
     }
 
-    void bump(Duration duration) {
+    public void bump(Duration duration) {
         instant = instant.plus(duration);
     }
 
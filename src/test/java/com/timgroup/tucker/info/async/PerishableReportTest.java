@@ -8,6 +8,8 @@ import java.time.Instant;
 
 import static com.timgroup.tucker.info.Status.*;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 
 public final class PerishableReportTest {
@@ -32,4 +34,13 @@ public final class PerishableReportTest {
         assertEquals(CRITICAL, report.getPotentiallyStaleReport().getStatus());
     }
 
-}
\ No newline at end of file
+    @Test
+    public void isStaleOnceOlderThanTheStalenessLimit() {
+        PerishableReport report = new PerishableReport(new Report(OK, "all is well"), clock, Duration.ofSeconds(1L));
+
+        assertFalse(report.isStale());
+        clock.bump(Duration.ofSeconds(2));
+        assertTrue(report.isStale());
+    }
+
+}
@@ -2,6 +2,7 @@ package com.timgroup.tucker.info.httpserver;
 
 import com.codahale.metrics.MetricRegistry;
 import com.timgroup.tucker.info.component.JarVersionComponent;
+import com.timgroup.tucker.info.status.StatusChangeSubscription;
 import com.timgroup.tucker.info.status.StatusPageGenerator;
 import org.junit.After;
 import org.junit.Before;
@@ -17,6 +18,7 @@ import static com.timgroup.tucker.info.Stoppable.ALWAYS_STOPPABLE;
 import static com.timgroup.tucker.info.httpserver.ApplicationInformationServer.create;
 import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.endsWith;
+import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.startsWith;
 import static org.hamcrest.MatcherAssert.assertThat;
 
@@ -59,6 +61,16 @@ public class ApplicationInformationServerTest {
         assertThat(statusPageJavascript, endsWith("})"));
     }
 
+    @Test
+    public void
+    stoppingTheServerClosesChangeSubscriptions() {
+        StatusChangeSubscription subscription = statusPage.subscribeToChanges(null);
+
+        server.stop();
+
+        assertThat(subscription.isOpen(), is(false));
+    }
+
     private String load(String url) throws IOException {
         BufferedReader reader =
                 new BufferedReader(new InputStreamReader(new URL(url).openStream()));
@@ -37,6 +37,15 @@ public class HttpServerWebResponseTest {
         assertEquals(body, out);
     }
 
+    @Test
+    public void respondWithDeclaredContentLength() throws Exception {
+        HttpServerWebResponse response = new HttpServerWebResponse(exchange, null);
+        response.setHeader("Content-Length", "42");
+        response.respond("content/type", "UTF-8");
+
+        verify(exchange).sendResponseHeaders(200, 42);
+    }
+
     @Test
     public void reject() throws Exception {
         String message = "X00398.1984";
@@ -0,0 +1,60 @@
+package com.timgroup.tucker.info.status;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SnapshotCoalescerTest {
+
+    @Test
+    public void requestsJoiningAFailedEvaluationSeeItsOriginalException() throws Exception {
+        CountDownLatch evaluating = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        SnapshotCoalescer coalescer = new SnapshotCoalescer(() -> {
+            evaluating.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            throw new IllegalStateException("no page for you");
+        });
+
+        FutureTask<StatusPage> first = new FutureTask<>(() -> coalescer.get(Duration.ZERO));
+        FutureTask<StatusPage> second = new FutureTask<>(() -> coalescer.get(Duration.ZERO));
+        try {
+            new Thread(first).start();
+            assertTrue(evaluating.await(5, TimeUnit.SECONDS));
+            Thread secondThread = new Thread(second);
+            secondThread.start();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (secondThread.getState() != Thread.State.WAITING && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+
+            assertFailedWith(first, "no page for you");
+            assertFailedWith(second, "no page for you");
+        } finally {
+            release.countDown();
+        }
+    }
+
+    private static void assertFailedWith(FutureTask<StatusPage> request, String message) throws Exception {
+        try {
+            request.get(5, TimeUnit.SECONDS);
+            fail("expected the evaluation to fail");
+        } catch (ExecutionException e) {
+            assertEquals(IllegalStateException.class, e.getCause().getClass());
+            assertEquals(message, e.getCause().getMessage());
+        }
+    }
+}
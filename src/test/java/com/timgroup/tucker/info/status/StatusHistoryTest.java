@@ -0,0 +1,53 @@
+package com.timgroup.tucker.info.status;
+
+import java.time.Instant;
+
+import com.timgroup.tucker.info.Component;
+import com.timgroup.tucker.info.Report;
+import com.timgroup.tucker.info.Status;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class StatusHistoryTest {
+    private final Component component = Component.of("flapping", "Flapping", new Report(Status.OK));
+
+    @Test
+    public void keepsOnlyTheMostRecentTransitions() {
+        StatusHistory history = new StatusHistory(4, 2);
+        for (int i = 0; i < 100; i++) {
+            history.recordTransition(1000L * i, i % 2 == 0 ? Status.OK : Status.CRITICAL);
+        }
+
+        ComponentHistory snapshot = history.snapshot(component, Instant.ofEpochMilli(100_000L));
+
+        assertEquals(4, snapshot.getTransitions().size());
+        assertEquals(Instant.ofEpochMilli(96_000L), snapshot.getTransitions().get(0).getAt());
+        assertEquals(Status.OK, snapshot.getTransitions().get(0).getStatus());
+        assertEquals(Status.CRITICAL, snapshot.getTransitions().get(3).getStatus());
+        assertEquals(1_000L, snapshot.getInCurrentStatus().toMillis());
+    }
+
+    @Test
+    public void keepsOnlyTheMostRecentValues() {
+        StatusHistory history = new StatusHistory(4, 2);
+        history.recordValue(1L, "one");
+        history.recordValue(2L, "two");
+        history.recordValue(3L, "three");
+
+        ComponentHistory snapshot = history.snapshot(component, Instant.ofEpochMilli(4L));
+
+        assertEquals(2, snapshot.getValues().size());
+        assertEquals("two", snapshot.getValues().get(0).getValue());
+        assertEquals("three", snapshot.getValues().get(1).getValue());
+    }
+
+    @Test
+    public void hasNoCurrentStatusBeforeAnyTransition() {
+        ComponentHistory snapshot = new StatusHistory(4, 2).snapshot(component, Instant.EPOCH);
+
+        assertEquals(0, snapshot.getTransitions().size());
+        assertNull(snapshot.getInCurrentStatus());
+    }
+}
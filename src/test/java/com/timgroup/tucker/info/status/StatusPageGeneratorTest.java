@@ -1,15 +1,22 @@
 package com.timgroup.tucker.info.status;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.timgroup.tucker.info.Component;
+import com.timgroup.tucker.info.ContentEncoding;
 import com.timgroup.tucker.info.Health;
 import com.timgroup.tucker.info.Report;
 import com.timgroup.tucker.info.Runbook;
 import com.timgroup.tucker.info.Status;
+import com.timgroup.tucker.info.async.AsyncComponent;
+import com.timgroup.tucker.info.async.AsyncSettings;
+import com.timgroup.tucker.info.async.ListenerDispatcher;
+import com.timgroup.tucker.info.async.ManualClock;
 import com.timgroup.tucker.info.component.VersionComponent;
 import org.junit.Test;
 import org.w3c.dom.Document;
@@ -35,16 +42,31 @@ import java.net.InetAddress;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
 import java.time.Clock;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.ZoneOffset;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Arrays.asList;
+import static java.util.stream.Collectors.toList;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 public class StatusPageGeneratorTest {
@@ -341,6 +363,670 @@ public class StatusPageGeneratorTest {
         assertEquals("null", object.at("/components/1/runbook/locationUrl").asText());
     }
 
+    @Test
+    public void parallelEvaluationRunsComponentsConcurrentlyAndKeepsTheirOrder() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            CountDownLatch bothRunning = new CountDownLatch(2);
+            StatusPageGenerator statusPage = new StatusPageGenerator("myapp", version).withParallelEvaluation(executor);
+            statusPage.addComponent(awaitingComponent("first", bothRunning));
+            statusPage.addComponent(awaitingComponent("second", bothRunning));
+
+            ObjectNode object = renderJson(statusPage, Health.ALWAYS_HEALTHY);
+
+            assertEquals("first", object.at("/components/2/id").asText());
+            assertEquals("ok", object.at("/components/2/status").asText());
+            assertEquals("second", object.at("/components/3/id").asText());
+            assertEquals("ok", object.at("/components/3/status").asText());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void parallelEvaluationStillTurnsExceptionsIntoCriticalReports() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            StatusPageGenerator statusPage = new StatusPageGenerator("myapp", version).withParallelEvaluation(executor);
+            statusPage.addComponent(Component.supplyReport("mycomponent", "Red wire or green wire", () -> { throw new Error("wrong wire"); }));
+
+            ObjectNode object = renderJson(statusPage, Health.ALWAYS_HEALTHY);
+
+            JsonNode node = findComponentById(object, "mycomponent");
+            assertEquals("critical", node.get("status").asText());
+            assertEquals("wrong wire", node.get("exception").asText());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void componentOverrunningItsDeadlineIsReportedFromItsLastCompletedResult() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        StatusPageGenerator statusPage = new StatusPageGenerator("myapp", version)
+                .withEvaluationDeadlines(Duration.ofMillis(50), Duration.ofSeconds(5));
+        statusPage.addComponent(Component.supplyReport("mycomponent", "Sometimes hangs", () -> {
+            if (calls.getAndIncrement() > 0) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+            return new Report(Status.OK, "fine");
+        }));
+
+        try {
+            assertEquals("fine", findComponentById(renderJson(statusPage, Health.ALWAYS_HEALTHY), "mycomponent").get("value").asText());
+
+            JsonNode node = findComponentById(renderJson(statusPage, Health.ALWAYS_HEALTHY), "mycomponent");
+            assertEquals("warning", node.get("status").asText());
+            assertEquals("Timed out after PT0.05S, last completed: fine", node.get("value").asText());
+
+            renderJson(statusPage, Health.ALWAYS_HEALTHY);
+            assertEquals("hung evaluation should not be started again", 2, calls.get());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void componentOverrunningItsDeadlineShowsInDeltasAndHistory() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        StatusPageGenerator statusPage = new StatusPageGenerator("myapp", version)
+                .withEvaluationDeadlines(Duration.ofMillis(50), Duration.ofSeconds(5));
+        statusPage.addComponent(Component.supplyReport("mycomponent", "Sometimes hangs", () -> {
+            if (calls.getAndIncrement() > 0) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+            return new Report(Status.OK, "fine");
+        }));
+
+        try {
+            String beforeTimeout = statusPage.getApplicationReport().getChangeToken();
+            ObjectNode delta = renderJsonDelta(statusPage, beforeTimeout);
+
+            assertEquals(1, delta.at("/components").size());
+            assertEquals("mycomponent", delta.at("/components/0/id").asText());
+            assertEquals("warning", delta.at("/components/0/status").asText());
+            assertEquals(0, renderJsonDelta(statusPage, delta.at("/changeToken").asText()).at("/components").size());
+            List<ComponentHistory.Transition> transitions = statusPage.getHistory("mycomponent").get().getTransitions();
+            assertEquals(asList(Status.OK, Status.WARNING), transitions.stream().map(ComponentHistory.Transition::getStatus).collect(toList()));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void componentDeadlineStartsWhenTheEvaluationStartsRatherThanWhileItIsQueued() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            StatusPageGenerator statusPage = new StatusPageGenerator("myapp", version)
+                    .withParallelEvaluation(executor)
+                    .withEvaluationDeadlines(Duration.ofMillis(300), Duration.ofSeconds(5));
+            statusPage.addComponent(sleepingComponent("first", 200));
+            statusPage.addComponent(sleepingComponent("second", 200));
+
+            ObjectNode object = renderJson(statusPage, Health.ALWAYS_HEALTHY);
+
+            assertEquals("ok", findComponentById(object, "first").get("status").asText());
+            assertEquals("ok", findComponentById(object, "second").get("status").asText());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void componentRejectedByTheExecutorIsReportedWithoutBeingEvaluated() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        StatusPageGenerator statusPage = new StatusPageGenerator("myapp", version)
+                .withParallelEvaluation(task -> { throw new RejectedExecutionException("full"); });
+        statusPage.addComponent(Component.supplyReport("mycomponent", "Never runs", () -> {
+            calls.incrementAndGet();
+            return new Report(Status.OK);
+        }));
+
+        JsonNode node = findComponentById(renderJson(statusPage, Health.ALWAYS_HEALTHY), "mycomponent");
+
+        assertEquals("warning", node.get("status").asText());
+        assertEquals("Rejected by the evaluation executor, not yet completed", node.get("value").asText());
+        assertEquals(0, calls.get());
+    }
+
+    @Test
+    public void concurrentRequestsShareACoalescedEvaluation() throws Exception {
+        CountDownLatch evaluating = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        StatusPageGenerator statusPage = new StatusPageGenerator("myapp", version).withCoalescedEvaluation();
+        statusPage.addComponent(Component.supplyReport("mycomponent", "Slow", () -> {
+            calls.incrementAndGet();
+            evaluating.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            return new Report(Status.OK);
+        }));
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<StatusPage> first = executor.submit(statusPage::getApplicationReport);
+            assertTrue(evaluating.await(5, TimeUnit.SECONDS));
+            FutureTask<StatusPage> second = new FutureTask<>(statusPage::getApplicationReport);
+            Thread secondThread = new Thread(second);
+            secondThread.start();
+            while (secondThread.getState() != Thread.State.WAITING && !second.isDone()) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+
+            assertSame(first.get(5, TimeUnit.SECONDS), second.get(5, TimeUnit.SECONDS));
+            assertEquals(1, calls.get());
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void coalescedSnapshotIsReusedWithinTheGivenAge() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        StatusPageGenerator statusPage = new StatusPageGenerator("myapp", version).withCoalescedEvaluation(Duration.ofMinutes(1));
+        statusPage.addComponent(Component.supplyReport("mycomponent", "Counted", () -> new Report(Status.INFO, calls.incrementAndGet())));
+
+        assertSame(statusPage.getApplicationReport(), statusPage.getApplicationReport());
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void coalescedEvaluationWithoutReuseEvaluatesSequentialRequestsAfresh() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        StatusPageGenerator statusPage = new StatusPageGenerator("myapp", version).withCoalescedEvaluation();
+        statusPage.addComponent(Component.supplyReport("mycomponent", "Counted", () -> new Report(Status.INFO, calls.incrementAndGet())));
+
+        assertNotSame(statusPage.getApplicationReport(), statusPage.getApplicationReport());
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void encodedRenderingsAreMemoisedPerSnapshot() throws Exception {
+        StatusPage page = new StatusPageGenerator("myapp", version).getApplicationReport();
+
+        StringWriter writer = new StringWriter();
+        page.renderJson(writer, Health.State.healthy);
+
+        assertEquals(writer.toString(), new String(page.renderJsonBytes(Health.State.healthy), StandardCharsets.UTF_8));
+        assertSame(page.renderJsonBytes(Health.State.healthy), page.renderJsonBytes(Health.State.healthy));
+        assertSame(page.renderBytes(Health.State.ill), page.renderBytes(Health.State.ill));
+        assertNotSame(page.renderBytes(Health.State.healthy), page.renderBytes(Health.State.ill));
+    }
+
+    @Test
+    public void compressedRenderingsAreMemoisedPerSnapshot() throws Exception {
+        StatusPage page = new StatusPageGenerator("myapp", version).getApplicationReport();
+
+        byte[] gzipped = page.renderBytes(Health.State.healthy, ContentEncoding.gzip);
+
+        assertSame(gzipped, page.renderBytes(Health.State.healthy, ContentEncoding.gzip));
+        assertNotSame(gzipped, page.renderBytes(Health.State.healthy, ContentEncoding.deflate));
+        assertSame(page.renderJsonBytes(Health.State.ill, ContentEncoding.deflate), page.renderJsonBytes(Health.State.ill, ContentEncoding.deflate));
+        assertSame(page.renderJsonBytes(Health.State.ill), page.renderJsonBytes(Health.State.ill, ContentEncoding.identity));
+        assertEquals((byte) 0x1f, gzipped[0]);
+        assertEquals((byte) 0x8b, gzipped[1]);
+    }
+
+    @Test
+    public void deltaContainsOnlyComponentsChangedSinceTheGivenSequence() throws Exception {
+        AtomicInteger value = new AtomicInteger();
+        StatusPageGenerator statusPage = new StatusPageGenerator("myapp", version);
+        statusPage.addComponent(Component.supplyReport("changing", "Changing", () -> new Report(Status.INFO, value.get())));
+        statusPage.addComponent(Component.of("steady", "Steady", new Report(Status.OK, "fine")));
+
+        StatusPage firstPage = statusPage.getApplicationReport();
+        String first = firstPage.getChangeToken();
+        assertEquals(0, renderJsonDelta(statusPage, first).at("/components").size());
+
+        value.incrementAndGet();
+        ObjectNode delta = renderJsonDelta(statusPage, first);
+
+        assertEquals(first, delta.at("/since").asText());
+        assertTrue(delta.at("/sequence").asLong() > firstPage.getSequence());
+        assertEquals(delta.at("/changeToken").asText(), statusPage.getApplicationReport().getChangeToken());
+        assertEquals(1, delta.at("/components").size());
+        assertEquals("changing", delta.at("/components/0/id").asText());
+        assertEquals("1", delta.at("/components/0/value").asText());
+    }
+
+    @Test
+    public void deltaFromAnUnknownChangeTokenIsTheWholePage() throws Exception {
+        StatusPageGenerator statusPage = new StatusPageGenerator("myapp", version);
+        statusPage.addComponent(Component.of("steady", "Steady", new Report(Status.OK, "fine")));
+        String current = statusPage.getApplicationReport().getChangeToken();
+        String fromTheFuture = current.substring(0, current.indexOf(':') + 1) + Long.MAX_VALUE;
+        String fromAnotherProcess = new StatusPageGenerator("myapp", version).getApplicationReport().getChangeToken();
+
+        ObjectNode delta = renderJsonDelta(statusPage, fromTheFuture);
+        ObjectNode restarted = renderJsonDelta(statusPage, fromAnotherProcess);
+
+        assertTrue(delta.at("/since").isMissingNode());
+        assertEquals(3, delta.at("/components").size());
+        assertTrue(restarted.at("/since").isMissingNode());
+        assertEquals(3, restarted.at("/components").size());
+    }
+
+    @Test
+    public void changeSubscriptionReplaysMissedChangesThenDeliversNewOnes() throws Exception {
+        AtomicInteger value = new AtomicInteger();
+        StatusPageGenerator statusPage = new StatusPageGenerator("myapp", version);
+        statusPage.addComponent(Component.supplyReport("changing", "Changing", () -> new Report(Status.INFO, value.get())));
+        StatusPage page = statusPage.getApplicationReport();
+        value.incrementAndGet();
+        statusPage.getApplicationReport();
+
+        try (StatusChangeSubscription subscription = statusPage.subscribeToChanges(page.getChangeToken())) {
+            StatusChangeEvent missed = subscription.poll(0, TimeUnit.SECONDS);
+            assertEquals("changing", missed.getComponentId());
+            assertTrue(missed.getSequence() > page.getSequence());
+            assertEquals(statusPage.getApplicationReport().getChangeToken(), missed.getChangeToken());
+            assertNull(subscription.poll(0, TimeUnit.SECONDS));
+
+            value.incrementAndGet();
+            statusPage.getApplicationReport();
+            StatusChangeEvent live = subscription.poll(1, TimeUnit.SECONDS);
+            assertEquals("changing", live.getComponentId());
+            assertEquals("2", new ObjectMapper().readTree(live.getJson()).at("/value").asText());
+        }
+    }
+
+    @Test
+    public void changeSubscriptionIsClosedWhenItFallsTooFarBehind() throws Exception {
+        AtomicInteger value = new AtomicInteger();
+        StatusPageGenerator statusPage = new StatusPageGenerator("myapp", version).withChangeSubscriptionLimits(1, 2);
+        statusPage.addComponent(Component.supplyReport("changing", "Changing", () -> new Report(Status.INFO, value.incrementAndGet())));
+        String current = statusPage.getApplicationReport().getChangeToken();
+
+        StatusChangeSubscription subscription = statusPage.subscribeToChanges(current);
+        assertNull(statusPage.subscribeToChanges(current));
+        for (int i = 0; i < 3; i++) {
+            statusPage.getApplicationReport();
+        }
+
+        assertFalse(subscription.isOpen());
+        assertNull(subscription.poll(0, TimeUnit.SECONDS));
+        assertTrue(statusPage.subscribeToChanges(current) != null);
+    }
+
+    @Test
+    public void changeSubscriptionFromAnotherProcessStartsWithAResetAndEveryComponent() throws Exception {
+        StatusPageGenerator statusPage = new StatusPageGenerator("myapp", version);
+        statusPage.addComponent(Component.of("steady", "Steady", new Report(Status.OK, "fine")));
+        statusPage.getApplicationReport();
+        String fromAnotherProcess = new StatusPageGenerator("myapp", version).getApplicationReport().getChangeToken();
+
+        try (StatusChangeSubscription subscription = statusPage.subscribeToChanges(fromAnotherProcess)) {
+            StatusChangeEvent reset = subscription.poll(0, TimeUnit.SECONDS);
+            assertTrue(reset.isReset());
+            assertEquals(0L, reset.getSequence());
+            List<String> replayed = new ArrayList<>();
+            for (StatusChangeEvent event = subscription.poll(0, TimeUnit.SECONDS); event != null; event = subscription.poll(0, TimeUnit.SECONDS)) {
+                replayed.add(event.getComponentId());
+            }
+            assertEquals(3, replayed.size());
+            assertTrue(replayed.contains("steady"));
+        }
+    }
+
+    @Test
+    public void changeSubscriptionWhoseReplayWouldOverflowItsBufferStartsWithAResetInstead() throws Exception {
+        StatusPageGenerator statusPage = new StatusPageGenerator("myapp", version).withChangeSubscriptionLimits(1, 5);
+        String beforeAnything = statusPage.getApplicationReport().getChangeToken();
+        for (String id : asList("a", "b", "c", "d", "e", "f")) {
+            statusPage.addComponent(Component.of(id, id, new Report(Status.OK, id)));
+        }
+        statusPage.getApplicationReport();
+        for (String id : asList("c", "d", "e", "f")) {
+            statusPage.removeComponent(id);
+        }
+
+        try (StatusChangeSubscription subscription = statusPage.subscribeToChanges(beforeAnything)) {
+            assertTrue(subscription.poll(0, TimeUnit.SECONDS).isReset());
+            List<String> replayed = new ArrayList<>();
+            for (StatusChangeEvent event = subscription.poll(0, TimeUnit.SECONDS); event != null; event = subscription.poll(0, TimeUnit.SECONDS)) {
+                replayed.add(event.getComponentId());
+            }
+            assertEquals(4, replayed.size());
+            assertTrue(replayed.containsAll(asList("a", "b")));
+            assertTrue(subscription.isOpen());
+        }
+    }
+
+    @Test
+    public void metricsAreRenderedInPrometheusTextFormat() throws Exception {
+        StatusPageGenerator statusPage = new StatusPageGenerator("myapp", version);
+        statusPage.addComponent(Component.of("quoted\"id", "Quoted", new Report(Status.WARNING, "hmm")));
+
+        StringWriter writer = new StringWriter();
+        statusPage.getApplicationReport().renderMetrics(writer, Health.State.ill);
+        String metrics = writer.toString();
+
+        assertTrue(metrics.startsWith("# HELP tucker_component_status Tucker Status Page Component Status converted to metrics.\n# TYPE tucker_component_status gauge\n"));
+        assertTrue(metrics.contains("tucker_component_status{component=\"quoted\\\"id\",status=\"warning\"} 1.0\n"));
+        assertTrue(metrics.contains("tucker_component_status{component=\"quoted\\\"id\",status=\"ok\"} 0.0\n"));
+        assertTrue(metrics.contains("tucker_health{state=\"ill\"} 1.0\n"));
+        assertTrue(metrics.contains("tucker_health{state=\"healthy\"} 0.0\n"));
+        assertTrue(metrics.contains("# TYPE tucker_component_changes_total counter\ntucker_component_changes_total 3.0\n"));
+    }
+
+    @Test
+    public void openMetricsIncludeTimingsAndNumericValues() throws Exception {
+        Clock clock = Clock.fixed(Instant.parse("2020-01-01T00:00:00Z"), ZoneOffset.UTC);
+        StatusPageGenerator statusPage = new StatusPageGenerator("myapp", version, clock);
+        statusPage.addComponent(Component.of("queue", "Queue", new Report(Status.OK, 42)));
+        AsyncComponent async = AsyncComponent.wrapping(Component.of("async", "Async", new Report(Status.OK, "done")));
+        statusPage.addComponent(async);
+        async.update();
+
+        StringWriter writer = new StringWriter();
+        statusPage.getApplicationReport().renderOpenMetrics(writer, Health.State.healthy);
+        String metrics = writer.toString();
+
+        assertTrue(metrics.contains("# TYPE tucker_component_evaluation_seconds gauge\n# UNIT tucker_component_evaluation_seconds seconds\n"));
+        assertTrue(metrics.contains("tucker_component_evaluation_seconds{component=\"queue\"} "));
+        assertTrue(metrics.contains("tucker_component_evaluation_seconds{component=\"async\"} "));
+        assertTrue(metrics.contains("tucker_component_evaluated_timestamp_seconds{component=\"queue\"} 1.5778368E9\n"));
+        assertTrue(metrics.contains("tucker_component_value{component=\"queue\"} 42.0\n"));
+        assertFalse(metrics.contains("tucker_component_value{component=\"async\"}"));
+        assertTrue(metrics.contains("# TYPE tucker_component_changes counter\ntucker_component_changes_total "));
+        assertTrue(metrics.endsWith("# EOF\n"));
+    }
+
+    @Test
+    public void evaluationsAreTimedIntoTheSuppliedRegistry() throws Exception {
+        MetricRegistry registry = new MetricRegistry();
+        StatusPageGenerator statusPage = new StatusPageGenerator("myapp", version).withEvaluationTimers(registry);
+        statusPage.addComponent(Component.of("mycomponent", "My Component", new Report(Status.OK, "fine")));
+        AsyncComponent async = AsyncComponent.wrapping(Component.of("async", "Async", new Report(Status.OK, "done")));
+        statusPage.addComponent(async);
+        async.update();
+        async.update();
+
+        ObjectNode json = renderJson(statusPage, Health.ALWAYS_HEALTHY);
+
+        assertEquals(1, registry.timer("tucker.component.mycomponent.evaluation").getCount());
+        assertEquals(1, registry.timer("tucker.component.version.evaluation").getCount());
+        assertEquals(2, registry.timer("tucker.component.async.evaluation").getCount());
+        assertEquals(1, findComponentById(json, "mycomponent").at("/evaluationMillis/count").asInt());
+        assertTrue(findComponentById(json, "mycomponent").at("/evaluationMillis/p50").isNumber());
+        assertTrue(findComponentById(json, "mycomponent").at("/evaluationMillis/p99").isNumber());
+        assertEquals(2, findComponentById(json, "async").at("/evaluationMillis/count").asInt());
+    }
+
+    @Test
+    public void evaluationTimingsAreFixedWhenThePageIsProducedAndLeftOutOfItsContentHash() throws Exception {
+        StatusPageGenerator statusPage = new StatusPageGenerator("myapp", version).withEvaluationTimers(new MetricRegistry());
+        statusPage.addComponent(Component.of("mycomponent", "My Component", new Report(Status.OK, "fine")));
+
+        StatusPage first = statusPage.getApplicationReport();
+        StatusPage second = statusPage.getApplicationReport();
+        StringWriter writer = new StringWriter();
+        first.renderJson(writer, Health.State.healthy);
+        ObjectNode json = (ObjectNode) new ObjectMapper().readTree(writer.toString());
+
+        assertEquals(1, findComponentById(json, "mycomponent").at("/evaluationMillis/count").asInt());
+        assertEquals(first.getContentHash(), second.getContentHash());
+    }
+
+    @Test
+    public void componentMetricsReadCachedStateWithoutEvaluating() throws Exception {
+        AtomicInteger evaluations = new AtomicInteger();
+        Clock clock = Clock.fixed(Instant.parse("2020-01-01T00:00:00Z"), ZoneOffset.UTC);
+        StatusPageGenerator statusPage = new StatusPageGenerator("myapp", version, clock);
+        statusPage.addComponent(Component.supplyReport("counted", "Counted", () -> new Report(Status.WARNING, evaluations.incrementAndGet())));
+        AsyncComponent async = AsyncComponent.wrapping(Component.of("async", "Async", new Report(Status.OK, "done")),
+                AsyncSettings.settings().withClock(clock).withStalenessLimit(Duration.ofSeconds(-1)));
+        statusPage.addComponent(async);
+        MetricRegistry registry = new MetricRegistry();
+        registry.registerAll(statusPage.getComponentMetrics());
+
+        assertNull(registry.getGauges().get("tucker.component.counted.status").getValue());
+        statusPage.getApplicationReport();
+        for (int i = 0; i < 3; i++) {
+            registry.getGauges().values().forEach(Gauge::getValue);
+        }
+
+        assertEquals(1, evaluations.get());
+        assertEquals(Status.WARNING.ordinal(), registry.getGauges().get("tucker.component.counted.status").getValue());
+        assertEquals(0L, registry.getGauges().get("tucker.component.counted.ageMillis").getValue());
+        assertEquals(0, registry.getGauges().get("tucker.component.counted.stale").getValue());
+        assertTrue(registry.getGauges().get("tucker.component.counted.evaluationMillis").getValue() instanceof Double);
+        assertEquals(1, registry.getGauges().get("tucker.component.async.stale").getValue());
+        assertEquals(0L, registry.getGauges().get("tucker.component.async.hungUpdates").getValue());
+        assertNull(registry.getGauges().get("tucker.component.counted.hungUpdates"));
+    }
+
+    @Test
+    public void componentMetricsFollowComponentsAddedReplacedAndRemoved() {
+        StatusPageGenerator statusPage = new StatusPageGenerator("myapp", version);
+        statusPage.addComponent(Component.of("existing", "Existing", new Report(Status.OK, "fine")));
+        MetricRegistry registry = new MetricRegistry();
+        statusPage.withComponentMetrics(registry);
+        assertNotNull(registry.getGauges().get("tucker.component.existing.status"));
+
+        statusPage.addComponent(Component.of("later", "Later", new Report(Status.OK, "fine")));
+        assertNotNull(registry.getGauges().get("tucker.component.later.status"));
+        assertNull(registry.getGauges().get("tucker.component.later.hungUpdates"));
+
+        statusPage.addComponent(AsyncComponent.wrapping(Component.of("later", "Later", new Report(Status.OK, "fine"))));
+        assertNotNull(registry.getGauges().get("tucker.component.later.hungUpdates"));
+
+        statusPage.addComponent(Component.of("later", "Later", new Report(Status.OK, "fine")));
+        assertNull(registry.getGauges().get("tucker.component.later.hungUpdates"));
+
+        statusPage.removeComponent("later");
+        assertTrue(registry.getGauges().keySet().stream().noneMatch(name -> name.startsWith("tucker.component.later.")));
+        assertNotNull(registry.getGauges().get("tucker.component.existing.status"));
+    }
+
+    @Test
+    public void historyRecordsStatusTransitionsAndDistinctValues() throws Exception {
+        Report[] reports = {
+                new Report(Status.OK, "up"),
+                new Report(Status.OK, "up"),
+                new Report(Status.CRITICAL, "down"),
+                new Report(Status.CRITICAL, "still down"),
+                new Report(Status.OK, "up")
+        };
+        AtomicInteger evaluations = new AtomicInteger();
+        StatusPageGenerator statusPage = new StatusPageGenerator("myapp", version);
+        statusPage.addComponent(Component.supplyReport("flapping", "Flapping", () -> reports[evaluations.getAndIncrement()]));
+        for (int i = 0; i < reports.length; i++) {
+            statusPage.getApplicationReport();
+        }
+
+        ComponentHistory history = statusPage.getHistory("flapping").get();
+        StringWriter writer = new StringWriter();
+        history.renderJson(writer);
+        JsonNode json = new ObjectMapper().readTree(writer.toString());
+
+        assertEquals(3, history.getTransitions().size());
+        assertEquals(Status.OK, history.getTransitions().get(2).getStatus());
+        assertEquals(Status.CRITICAL, history.getTransitions().get(1).getStatus());
+        assertEquals(4, history.getValues().size());
+        assertEquals("ok", json.get("status").asText());
+        assertEquals("critical", json.at("/transitions/1/status").asText());
+        assertEquals("still down", json.at("/values/1/value").asText());
+        assertTrue(json.get("inCurrentStatusMillis").asLong() >= 0);
+        assertFalse(statusPage.getHistory("nonsense").isPresent());
+    }
+
+    @Test
+    public void historyIncludesBackgroundUpdatesOfAsyncComponents() throws Exception {
+        AtomicInteger updates = new AtomicInteger();
+        StatusPageGenerator statusPage = new StatusPageGenerator("myapp", version);
+        AsyncComponent async = AsyncComponent.wrapping(Component.supplyReport("async", "Async",
+                () -> new Report(updates.incrementAndGet() % 2 == 0 ? Status.WARNING : Status.OK, "update")));
+        statusPage.addComponent(async);
+        for (int i = 0; i < 4; i++) {
+            async.update();
+        }
+
+        assertEquals(4, statusPage.getHistory("async").get().getTransitions().size());
+        assertEquals(1, statusPage.getHistory("async").get().getValues().size());
+    }
+
+    @Test
+    public void everyBackgroundUpdateReachesTheStatusPageWhateverTheListenerSettings() throws Exception {
+        MetricRegistry registry = new MetricRegistry();
+        StatusPageGenerator statusPage = new StatusPageGenerator("myapp", version).withEvaluationTimers(registry);
+        ListenerDispatcher dispatcher = ListenerDispatcher.create();
+        dispatcher.close();
+        AsyncComponent async = AsyncComponent.wrapping(Component.of("async", "Async", new Report(Status.OK, "steady")),
+                AsyncSettings.settings().withListenerDispatcher(dispatcher).withChangedReportsOnly());
+        statusPage.addComponent(async);
+        async.update();
+        async.update();
+
+        assertEquals(2, registry.timer("tucker.component.async.evaluation").getCount());
+        assertEquals(1, statusPage.getHistory("async").get().getTransitions().size());
+    }
+
+    @Test
+    public void uptimeIsCountedInMinutesFromEvaluations() throws Exception {
+        Clock clock = Clock.fixed(Instant.parse("2020-01-01T00:00:30Z"), ZoneOffset.UTC);
+        StatusPageGenerator statusPage = new StatusPageGenerator("myapp", version, clock).withUptimeLedger(Duration.ofDays(1));
+        statusPage.addComponent(Component.of("db", "Database", new Report(Status.CRITICAL, "down")));
+        statusPage.getApplicationReport();
+
+        UptimeReport uptime = statusPage.getUptime("db", Duration.ofHours(1)).get();
+        StringWriter writer = new StringWriter();
+        statusPage.getUptime(Duration.ofHours(1)).renderJson(writer);
+        JsonNode json = new ObjectMapper().readTree(writer.toString());
+
+        assertEquals(Instant.parse("2020-01-01T00:01:00Z"), uptime.getTo());
+        assertEquals(1, uptime.getComponents().get(0).getCriticalMinutes());
+        assertEquals(59, uptime.getComponents().get(0).getUnknownMinutes());
+        assertEquals(0.0, uptime.getComponents().get(0).getUptime(), 0.0);
+        assertEquals(100.0, json.at("/components/0/uptimePercent").asDouble(), 0.0);
+        assertEquals("db", json.at("/components/2/id").asText());
+        assertFalse(statusPage.getUptime("nonsense", Duration.ofHours(1)).isPresent());
+    }
+
+    @Test
+    public void slowAsyncComponentsCountTowardsTheMinutesTheyAreReadIn() throws Exception {
+        ManualClock clock = ManualClock.initiallyAt(Instant.parse("2020-01-01T00:00:30Z"));
+        StatusPageGenerator statusPage = new StatusPageGenerator("myapp", version, clock).withUptimeLedger(Duration.ofDays(1));
+        AsyncComponent async = AsyncComponent.wrapping(Component.of("slow", "Slow", new Report(Status.OK, "fine")),
+                AsyncSettings.settings()
+                        .withClock(clock)
+                        .withRepeatSchedule(Duration.ofMinutes(1))
+                        .withAdaptiveRepeatSchedule(Duration.ofSeconds(30), Duration.ofMinutes(30))
+                        .withStalenessLimit(Duration.ofHours(1)));
+        statusPage.addComponent(async);
+        async.update();
+        for (int minute = 1; minute <= 10; minute++) {
+            clock.bump(Duration.ofMinutes(1));
+            statusPage.getApplicationReport();
+        }
+
+        UptimeReport.ComponentUptime uptime = statusPage.getUptime("slow", Duration.ofHours(1)).get().getComponents().get(0);
+
+        assertEquals(11, uptime.getOkMinutes());
+        assertEquals(0, uptime.getWarningMinutes());
+        assertEquals(49, uptime.getUnknownMinutes());
+    }
+
+    @Test
+    public void replacingAComponentKeepsItsPlaceOnThePage() throws Exception {
+        StatusPageGenerator statusPage = new StatusPageGenerator("myapp", version);
+        statusPage.addComponent(Component.of("db", "Database", new Report(Status.CRITICAL, "down")));
+        statusPage.addComponent(Component.of("queue", "Queue", new Report(Status.OK, "empty")));
+        statusPage.addComponent(Component.of("db", "Database", new Report(Status.OK, "up")));
+
+        ObjectNode json = renderJsonDelta(statusPage, "unknown:0");
+
+        assertEquals(4, json.at("/components").size());
+        assertEquals("db", json.at("/components/2/id").asText());
+        assertEquals("up", json.at("/components/2/value").asText());
+        assertEquals("queue", json.at("/components/3/id").asText());
+        assertEquals(Status.OK, statusPage.getApplicationReport().getApplicationStatus());
+    }
+
+    @Test
+    public void removedComponentsAreDroppedAndListedInDeltas() throws Exception {
+        StatusPageGenerator statusPage = new StatusPageGenerator("myapp", version);
+        statusPage.addComponent(Component.of("doomed", "Doomed", new Report(Status.CRITICAL, "down")));
+        statusPage.addComponent(Component.of("steady", "Steady", new Report(Status.OK, "fine")));
+        StatusPage before = statusPage.getApplicationReport();
+
+        assertTrue(statusPage.removeComponent("doomed"));
+        assertFalse(statusPage.removeComponent("doomed"));
+        StatusPage page = statusPage.getApplicationReport();
+        ObjectNode delta = renderJsonDelta(statusPage, before.getChangeToken());
+        StringWriter metrics = new StringWriter();
+        page.renderMetrics(metrics, Health.State.healthy);
+
+        assertTrue(page.getSequence() > before.getSequence());
+        assertEquals(Status.OK, page.getApplicationStatus());
+        assertEquals(0, delta.at("/components").size());
+        assertEquals(1, delta.at("/removed").size());
+        assertEquals("doomed", delta.at("/removed/0").asText());
+        assertEquals(0, renderJsonDelta(statusPage, page.getChangeToken()).at("/removed").size());
+        assertFalse(metrics.toString().contains("doomed"));
+        assertFalse(statusPage.getHistory("doomed").isPresent());
+    }
+
+    @Test
+    public void changeSubscriptionReplaysAndDeliversRemovals() throws Exception {
+        StatusPageGenerator statusPage = new StatusPageGenerator("myapp", version);
+        statusPage.addComponent(Component.of("first", "First", new Report(Status.OK, "fine")));
+        statusPage.addComponent(Component.of("second", "Second", new Report(Status.OK, "fine")));
+        String since = statusPage.getApplicationReport().getChangeToken();
+        statusPage.removeComponent("first");
+
+        try (StatusChangeSubscription subscription = statusPage.subscribeToChanges(since)) {
+            StatusChangeEvent missed = subscription.poll(0, TimeUnit.SECONDS);
+            assertTrue(missed.isRemoval());
+            assertEquals("first", missed.getComponentId());
+            assertEquals("{\"id\":\"first\"}", missed.getJson());
+
+            statusPage.removeComponent("second");
+            StatusChangeEvent live = subscription.poll(1, TimeUnit.SECONDS);
+            assertTrue(live.isRemoval());
+            assertEquals("second", live.getComponentId());
+            assertTrue(live.getSequence() > missed.getSequence());
+        }
+    }
+
+    private static Component awaitingComponent(String id, CountDownLatch latch) {
+        return Component.supplyReport(id, id, () -> {
+            latch.countDown();
+            try {
+                return latch.await(5, TimeUnit.SECONDS) ? new Report(Status.OK) : new Report(Status.CRITICAL, "evaluated alone");
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    private static Component sleepingComponent(String id, long millis) {
+        return Component.supplyReport(id, id, () -> {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            return new Report(Status.OK);
+        });
+    }
+
     private JsonNode findComponentById(ObjectNode object, String id) {
         JsonNode jsonNode = null;
         for (JsonNode node : (ArrayNode) object.at("/components")) {
@@ -432,6 +1118,12 @@ public class StatusPageGeneratorTest {
         return new ObjectMapper().readerFor(ObjectNode.class).readValue(string);
     }
 
+    private ObjectNode renderJsonDelta(StatusPageGenerator statusPage, String since) throws IOException {
+        Writer writer = new StringWriter();
+        statusPage.getApplicationReport().renderJsonDelta(writer, Health.State.healthy, since);
+        return new ObjectMapper().readerFor(ObjectNode.class).readValue(writer.toString());
+    }
+
     private static String probeHostname() {
         try {
             return InetAddress.getLocalHost().getHostName();
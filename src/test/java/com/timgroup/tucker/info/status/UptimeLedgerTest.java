@@ -0,0 +1,68 @@
+package com.timgroup.tucker.info.status;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+import com.timgroup.tucker.info.Status;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertArrayEquals;
+
+public class UptimeLedgerTest {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void recordsTheWorstStatusOfEachMinute() {
+        UptimeLedger ledger = UptimeLedger.inMemory(Duration.ofHours(1));
+        ledger.record(1000L, Status.OK);
+        ledger.record(1000L, Status.CRITICAL);
+        ledger.record(1000L, Status.WARNING);
+        ledger.record(1001L, Status.INFO);
+
+        assertArrayEquals(new long[] { 0, 1, 0, 1 }, ledger.count(1000L, 1002L));
+    }
+
+    @Test
+    public void minutesWithoutReportsKeepTheLastStatus() {
+        UptimeLedger ledger = UptimeLedger.inMemory(Duration.ofHours(1));
+        ledger.record(1000L, Status.WARNING);
+        ledger.record(1010L, Status.OK);
+
+        assertArrayEquals(new long[] { 5, 1, 10, 0 }, ledger.count(995L, 1011L));
+    }
+
+    @Test
+    public void minutesBeyondTheHorizonOrAfterTheLastReportAreUnknown() {
+        UptimeLedger ledger = UptimeLedger.inMemory(Duration.ofMinutes(64));
+        for (long minute = 0; minute < 200; minute++) {
+            ledger.record(minute, minute % 2 == 0 ? Status.OK : Status.CRITICAL);
+        }
+
+        assertArrayEquals(new long[] { 0, 32, 0, 32 }, ledger.count(136L, 200L));
+        assertArrayEquals(new long[] { 86, 32, 0, 32 }, ledger.count(100L, 250L));
+    }
+
+    @Test
+    public void mappedLedgerSurvivesReopeningButNotTheTimeItWasClosed() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("db.uptime");
+        UptimeLedger.mapped(file, Duration.ofHours(1)).record(1000L, Status.CRITICAL);
+
+        UptimeLedger reopened = UptimeLedger.mapped(file, Duration.ofHours(1));
+        reopened.record(1005L, Status.OK);
+
+        assertArrayEquals(new long[] { 4, 1, 0, 1 }, reopened.count(1000L, 1006L));
+    }
+
+    @Test
+    public void mappedLedgerIsResetWhenItsHorizonChanges() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("db.uptime");
+        UptimeLedger.mapped(file, Duration.ofHours(1)).record(1000L, Status.CRITICAL);
+
+        UptimeLedger reopened = UptimeLedger.mapped(file, Duration.ofHours(2));
+
+        assertArrayEquals(new long[] { 1, 0, 0, 0 }, reopened.count(1000L, 1001L));
+    }
+}